@@ -0,0 +1,116 @@
+package so.fox.blockchain.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AccountLatencyHarness {
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (arg.startsWith("--") && eq > 2) options.put(arg.substring(2, eq), arg.substring(eq + 1));
+    }
+    String url = options.getOrDefault("url", "http://localhost:8080");
+    String address = options.getOrDefault("address", "node");
+    int clients = Integer.parseInt(options.getOrDefault("clients", "32"));
+    int seconds = Integer.parseInt(options.getOrDefault("seconds", "15"));
+    HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+    HttpRequest read = HttpRequest.newBuilder(URI.create(url + "/api/account/" + address)).timeout(Duration.ofSeconds(30)).GET().build();
+    HttpRequest mine = HttpRequest.newBuilder(URI.create(url + "/api/mine")).timeout(Duration.ofMinutes(5))
+      .POST(HttpRequest.BodyPublishers.noBody()).build();
+
+    System.out.printf("target=%s clients=%d seconds=%d%n", read.uri(), clients, seconds);
+    run("warmup", http, read, clients, Math.max(1, seconds / 3), null);
+    run("idle", http, read, clients, seconds, null);
+    run("mining", http, read, clients, seconds, mine);
+  }
+
+  private static void run(String phase, HttpClient http, HttpRequest read, int clients, int seconds, HttpRequest mine) throws Exception {
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicInteger errors = new AtomicInteger();
+    AtomicInteger blocks = new AtomicInteger();
+    List<long[]> samples = new ArrayList<>();
+    int[] counts = new int[clients];
+    CountDownLatch done = new CountDownLatch(clients);
+    Thread miner = null;
+    if (mine != null) {
+      miner = new Thread(() -> {
+        while (running.get()) {
+          try {
+            if (http.send(mine, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) blocks.incrementAndGet();
+          } catch (Exception e) {
+            if (running.get()) errors.incrementAndGet();
+          }
+        }
+      }, "harness-miner");
+      miner.setDaemon(true);
+      miner.start();
+    }
+    for (int c = 0; c < clients; c++) {
+      long[] latencies = new long[1 << 16];
+      samples.add(latencies);
+      int slot = c;
+      Thread client = new Thread(() -> {
+        long[] own = latencies;
+        int n = 0;
+        try {
+          while (running.get()) {
+            long start = System.nanoTime();
+            try {
+              if (http.send(read, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) errors.incrementAndGet();
+            } catch (Exception e) {
+              errors.incrementAndGet();
+              continue;
+            }
+            if (n == own.length) {
+              own = Arrays.copyOf(own, n * 2);
+              synchronized (samples) {
+                samples.set(slot, own);
+              }
+            }
+            own[n++] = System.nanoTime() - start;
+          }
+        } finally {
+          counts[slot] = n;
+          done.countDown();
+        }
+      }, "harness-client-" + c);
+      client.setDaemon(true);
+      client.start();
+    }
+    TimeUnit.SECONDS.sleep(seconds);
+    running.set(false);
+    done.await();
+    if (miner != null) miner.join(TimeUnit.MINUTES.toMillis(5));
+
+    int total = 0;
+    for (int count : counts) total += count;
+    long[] all = new long[total];
+    int offset = 0;
+    for (int c = 0; c < clients; c++) {
+      System.arraycopy(samples.get(c), 0, all, offset, counts[c]);
+      offset += counts[c];
+    }
+    Arrays.sort(all);
+    System.out.printf("phase=%s requests=%d rps=%d errors=%d blocks=%d p50=%.2fms p90=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n",
+      phase, total, total / seconds, errors.get(), blocks.get(), millis(all, 0.50), millis(all, 0.90), millis(all, 0.99),
+      millis(all, 0.999), all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+  }
+
+  private static double millis(long[] sorted, double quantile) {
+    if (sorted.length == 0) return 0;
+    return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+  }
+}
@@ -0,0 +1,19 @@
+package so.fox.blockchain.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cli = new CommandLineOptions(args);
+    Options options = new OptionsBuilder()
+      .parent(cli)
+      .resultFormat(cli.getResultFormat().orElse(ResultFormatType.JSON))
+      .result(cli.getResult().orElse("jmh-result.json"))
+      .build();
+    new Runner(options).run();
+  }
+}
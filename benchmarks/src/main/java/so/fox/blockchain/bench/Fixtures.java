@@ -0,0 +1,52 @@
+package so.fox.blockchain.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.wallet.Wallet;
+
+final class Fixtures {
+  private Fixtures() {}
+
+  static Transaction signed(Wallet from, String to, long value, long fee, long nonce) {
+    String sender = from.getAddress();
+    String comment = "bench";
+    String data = sender + "|" + to + "|" + value + "|" + fee + "|" + nonce + "|" + comment;
+    String signature = Base64.getEncoder().encodeToString(from.sign(data));
+    return new Transaction(sender, to, value, fee, nonce, comment, signature);
+  }
+
+  static List<Transaction> transactions(Wallet from, int count) {
+    List<Transaction> txs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      txs.add(signed(from, "recipient" + i, 1_000 + i, 50, i));
+    }
+    return txs;
+  }
+
+  static List<Wallet> wallets(int count) {
+    List<Wallet> wallets = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      wallets.add(new Wallet());
+    }
+    return wallets;
+  }
+
+  static File tempDir(String prefix) throws IOException {
+    return Files.createTempDirectory(prefix).toFile();
+  }
+
+  static void delete(File dir) throws IOException {
+    if (dir == null || !dir.exists()) return;
+    try (Stream<Path> paths = Files.walk(dir.toPath())) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package so.fox.blockchain.bench;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.wallet.Wallet;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashingBenchmark {
+  private Block block;
+  private Transaction tx;
+  private PublicKey publicKey;
+
+  @Setup
+  public void setup() {
+    Wallet wallet = new Wallet();
+    publicKey = wallet.getPublicKey();
+    tx = Fixtures.signed(wallet, "recipient", 1_000, 50, 0);
+    block = new Block("0", new ArrayList<>());
+  }
+
+  @Benchmark
+  public String blockCalculateHash() {
+    return block.calculateHash();
+  }
+
+  @Benchmark
+  public String transactionGetHash() {
+    return tx.getHash();
+  }
+
+  @Benchmark
+  public String transactionHashUncached() {
+    Transaction copy = new Transaction(tx.getSender(), tx.getRecipient(), tx.getValue(), tx.getFee(),
+      tx.getTimestamp(), tx.getNonce(), tx.getComment(), tx.getSignature(), tx.getPublicKey(), tx.getStatus());
+    return copy.getHash();
+  }
+
+  @Benchmark
+  public String addressFromPublicKey() {
+    return Wallet.getAddressFromPublicKey(publicKey);
+  }
+}
@@ -0,0 +1,64 @@
+package so.fox.blockchain.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.MerkleTree;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.wallet.Wallet;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MerkleBenchmark {
+  @Param({"10", "100", "1000"})
+  public int blockSize;
+
+  private List<Transaction> txs;
+  private MerkleTree tree;
+  private Transaction extra;
+
+  @Setup
+  public void setup() {
+    Wallet wallet = new Wallet();
+    txs = Fixtures.transactions(wallet, blockSize);
+    tree = MerkleTree.of(txs);
+    extra = Fixtures.signed(wallet, "extra", 1, 50, blockSize);
+  }
+
+  @Benchmark
+  public String buildBlock() {
+    return new Block("0", txs).getMerkleRoot();
+  }
+
+  @Benchmark
+  public String fullTree() {
+    return MerkleTree.of(txs).getRoot();
+  }
+
+  @Benchmark
+  public String incrementalAppend() {
+    MerkleTree copy = MerkleTree.of(txs);
+    copy.append(extra);
+    return copy.getRoot();
+  }
+
+  @Benchmark
+  public Object proof() {
+    return tree.proof(blockSize / 2);
+  }
+}
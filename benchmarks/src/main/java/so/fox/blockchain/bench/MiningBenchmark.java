@@ -0,0 +1,59 @@
+package so.fox.blockchain.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.Miner;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MiningBenchmark {
+  @Param({"3", "4"})
+  public int difficulty;
+
+  private Miner miner;
+  private Block block;
+
+  @Setup(Level.Trial)
+  public void startMiner() {
+    miner = new Miner(Runtime.getRuntime().availableProcessors());
+  }
+
+  @Setup(Level.Invocation)
+  public void freshBlock() {
+    block = new Block("0", new ArrayList<>());
+  }
+
+  @TearDown(Level.Trial)
+  public void stopMiner() {
+    miner.close();
+  }
+
+  @Benchmark
+  public String singleThreadLoop() {
+    block.mineBlock(difficulty);
+    return block.getHash();
+  }
+
+  @Benchmark
+  public boolean parallelMiner() {
+    return miner.mine(block, difficulty);
+  }
+}
@@ -0,0 +1,117 @@
+package so.fox.blockchain.bench;
+
+import java.io.File;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.Node;
+import so.fox.blockchain.core.NodeOptions;
+import so.fox.blockchain.core.StorageEngine;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.wallet.Wallet;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NodeThroughputBenchmark {
+  private static final int FUNDING_BLOCKS = 10;
+
+  @Param({"10", "1000"})
+  public int accounts;
+
+  @Param({"100", "1000"})
+  public int blockSize;
+
+  @Param({"true", "false"})
+  public boolean syncWrites;
+
+  @Param({"iq80"})
+  public String engine;
+
+  private File dir;
+  private Node node;
+  private List<Wallet> wallets;
+  private final Map<String, Long> nonces = new HashMap<>();
+  private int cursor;
+  private List<Transaction> batch;
+  private List<PublicKey> keys;
+
+  @Setup(Level.Trial)
+  public void startNode() throws Exception {
+    dir = Fixtures.tempDir("bench-node");
+    node = new Node(0, new NodeOptions()
+      .dataDir(dir)
+      .syncWrites(syncWrites)
+      .storageEngine(StorageEngine.of(engine))
+      .maxBlockInterval(Long.MAX_VALUE)
+      .maxBlockTxCount(Integer.MAX_VALUE)
+      .maxBlockBytes(Long.MAX_VALUE));
+    for (int i = 0; i < FUNDING_BLOCKS; i++) {
+      node.mineBlock();
+    }
+    Wallet nodeWallet = node.getNodeWallet();
+    wallets = Fixtures.wallets(accounts);
+    long share = (node.getAccount(nodeWallet.getAddress()).getBalance() - accounts) / accounts - 1;
+    long nonce = node.getAccount(nodeWallet.getAddress()).getNonce();
+    for (Wallet w : wallets) {
+      String error = node.addTransaction(Fixtures.signed(nodeWallet, w.getAddress(), share, 1, nonce++), nodeWallet.getPublicKey());
+      if (!error.isEmpty()) throw new IllegalStateException(error);
+      nonces.put(w.getAddress(), 0L);
+    }
+    node.mineBlock();
+  }
+
+  @Setup(Level.Invocation)
+  public void signBatch() {
+    batch = new ArrayList<>(blockSize);
+    keys = new ArrayList<>(blockSize);
+    for (int i = 0; i < blockSize; i++) {
+      Wallet from = wallets.get(cursor % accounts);
+      Wallet to = wallets.get((cursor + 1) % accounts);
+      cursor++;
+      String recipient = from == to ? node.getNodeAddress() : to.getAddress();
+      long nonce = nonces.merge(from.getAddress(), 1L, Long::sum) - 1;
+      batch.add(Fixtures.signed(from, recipient, 1, 1, nonce));
+      keys.add(from.getPublicKey());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopNode() throws Exception {
+    node.close();
+    Fixtures.delete(dir);
+  }
+
+  @Benchmark
+  public Block addAndMine() {
+    for (int i = 0; i < batch.size(); i++) {
+      String error = node.addTransaction(batch.get(i), keys.get(i));
+      if (!error.isEmpty()) throw new IllegalStateException(error);
+    }
+    Block block = node.mineBlock();
+    if (block.getTransactions().size() != batch.size() + 1) {
+      throw new IllegalStateException("Block holds " + block.getTransactions().size() + " of " + batch.size() + " transactions");
+    }
+    return block;
+  }
+}
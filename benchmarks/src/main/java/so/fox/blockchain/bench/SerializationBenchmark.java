@@ -0,0 +1,90 @@
+package so.fox.blockchain.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+import so.fox.blockchain.wallet.Wallet;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+  @Param({"1", "100", "1000"})
+  public int blockSize;
+
+  private Block block;
+  private Account account;
+  private byte[] binaryBlock;
+  private byte[] javaBlock;
+  private byte[] binaryAccount;
+  private byte[] javaAccount;
+
+  @Setup
+  public void setup() throws IOException {
+    Wallet wallet = new Wallet();
+    block = new Block("0", Fixtures.transactions(wallet, blockSize));
+    account = new Account(wallet.getAddress(), 123_456_789L, 42);
+    binaryBlock = SerializationUtils.encodeBlock(block);
+    javaBlock = SerializationUtils.serialize(block);
+    binaryAccount = SerializationUtils.encodeAccount(account);
+    javaAccount = SerializationUtils.serialize(account);
+    System.out.printf("%nencoded size, %d tx block: binary %d bytes, java %d bytes; account: binary %d bytes, java %d bytes%n",
+      blockSize, binaryBlock.length, javaBlock.length, binaryAccount.length, javaAccount.length);
+  }
+
+  @Benchmark
+  public byte[] encodeBlockBinary() {
+    return SerializationUtils.encodeBlock(block);
+  }
+
+  @Benchmark
+  public byte[] encodeBlockJava() throws IOException {
+    return SerializationUtils.serialize(block);
+  }
+
+  @Benchmark
+  public Block decodeBlockBinary() throws IOException {
+    return SerializationUtils.decodeBlock(binaryBlock);
+  }
+
+  @Benchmark
+  public Object decodeBlockJava() throws Exception {
+    return SerializationUtils.deserialize(javaBlock);
+  }
+
+  @Benchmark
+  public byte[] encodeAccountBinary() {
+    return SerializationUtils.encodeAccount(account);
+  }
+
+  @Benchmark
+  public byte[] encodeAccountJava() throws IOException {
+    return SerializationUtils.serialize(account);
+  }
+
+  @Benchmark
+  public Account decodeAccountBinary() throws IOException {
+    return SerializationUtils.decodeAccount(binaryAccount);
+  }
+
+  @Benchmark
+  public Object decodeAccountJava() throws Exception {
+    return SerializationUtils.deserialize(javaAccount);
+  }
+}
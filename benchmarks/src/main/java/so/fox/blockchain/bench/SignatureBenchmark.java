@@ -0,0 +1,39 @@
+package so.fox.blockchain.bench;
+
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.wallet.Wallet;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureBenchmark {
+  private Transaction tx;
+  private PublicKey publicKey;
+
+  @Setup
+  public void setup() {
+    Wallet wallet = new Wallet();
+    publicKey = wallet.getPublicKey();
+    tx = Fixtures.signed(wallet, "recipient", 1_000, 50, 0);
+  }
+
+  @Benchmark
+  public boolean transactionVerify() {
+    return tx.verify(publicKey);
+  }
+}
@@ -0,0 +1,149 @@
+package so.fox.blockchain.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.StorageEngine;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+import so.fox.blockchain.wallet.Wallet;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageBenchmark {
+  private static final int PRELOADED_BLOCKS = 2_000;
+  private static final int SCAN_BLOCKS = 256;
+
+  @Param({"iq80", "leveldbjni", "memory"})
+  public String engine;
+
+  @Param({"10000"})
+  public int accounts;
+
+  @Param({"100"})
+  public int blockSize;
+
+  private File dir;
+  private DB db;
+  private final WriteOptions writeOptions = new WriteOptions().sync(false);
+  private List<byte[]> accountKeys;
+  private List<byte[]> accountRecords;
+  private byte[] blockRecord;
+  private byte[] headerRecord;
+  private byte[] undoRecord;
+  private int height;
+
+  @Setup(Level.Trial)
+  public void open() throws IOException {
+    dir = Fixtures.tempDir("bench-storage");
+    db = StorageEngine.of(engine).open(dir, new Options().createIfMissing(true));
+    Wallet wallet = new Wallet();
+    Block block = new Block("0", Fixtures.transactions(wallet, blockSize));
+    blockRecord = SerializationUtils.encodeBlock(block);
+    headerRecord = SerializationUtils.encodeHeader(block.header());
+    accountKeys = new ArrayList<>(accounts);
+    accountRecords = new ArrayList<>(accounts);
+    List<Account> undo = new ArrayList<>();
+    for (int i = 0; i < accounts; i++) {
+      Account account = new Account("account" + i, 1_000_000L + i, i);
+      accountKeys.add(key("acc_", account.getAddress()));
+      accountRecords.add(SerializationUtils.encodeAccount(account));
+      if (undo.size() < blockSize * 2) undo.add(account);
+    }
+    undoRecord = SerializationUtils.encodeUndo(undo);
+    try (WriteBatch batch = db.createWriteBatch()) {
+      for (int i = 0; i < accounts; i++) {
+        batch.put(accountKeys.get(i), accountRecords.get(i));
+      }
+      db.write(batch, writeOptions);
+    }
+    for (int i = 0; i < PRELOADED_BLOCKS; i++) {
+      appendBlock();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws IOException {
+    db.close();
+    Fixtures.delete(dir);
+  }
+
+  @Benchmark
+  public void appendBlock() throws IOException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int number = height++;
+    try (WriteBatch batch = db.createWriteBatch()) {
+      batch.put(key("blk_", number), blockRecord);
+      batch.put(key("hdr_", number), headerRecord);
+      batch.put(key("bhi_", "hash" + number), ByteBuffer.allocate(4).putInt(number).array());
+      batch.put(key("tree_", "hash" + number), ByteBuffer.allocate(12).putInt(number).putLong(number).array());
+      batch.put(key("undo_", "hash" + number), undoRecord);
+      for (int i = 0; i < blockSize * 2; i++) {
+        int slot = random.nextInt(accounts);
+        batch.put(accountKeys.get(slot), accountRecords.get(slot));
+      }
+      db.write(batch, writeOptions);
+    }
+  }
+
+  @Benchmark
+  public byte[] readAccount() {
+    return db.get(accountKeys.get(ThreadLocalRandom.current().nextInt(accounts)));
+  }
+
+  @Benchmark
+  public byte[] readHeader() {
+    return db.get(key("hdr_", ThreadLocalRandom.current().nextInt(PRELOADED_BLOCKS)));
+  }
+
+  @Benchmark
+  public void scanBlocks(Blackhole blackhole) throws IOException {
+    int from = ThreadLocalRandom.current().nextInt(PRELOADED_BLOCKS - SCAN_BLOCKS);
+    try (Snapshot snapshot = db.getSnapshot(); DBIterator iterator = db.iterator(new ReadOptions().snapshot(snapshot))) {
+      iterator.seek(key("blk_", from));
+      for (int i = 0; i < SCAN_BLOCKS && iterator.hasNext(); i++) {
+        blackhole.consume(iterator.next().getValue());
+      }
+    }
+  }
+
+  private static byte[] key(String prefix, int number) {
+    byte[] head = prefix.getBytes(StandardCharsets.UTF_8);
+    return ByteBuffer.allocate(head.length + 4).put(head).putInt(number).array();
+  }
+
+  private static byte[] key(String prefix, String suffix) {
+    return (prefix + suffix).getBytes(StandardCharsets.UTF_8);
+  }
+}
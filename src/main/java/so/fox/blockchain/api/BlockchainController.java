@@ -1,24 +1,50 @@
 package so.fox.blockchain.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.MerkleProof;
 import so.fox.blockchain.core.Node;
 import so.fox.blockchain.core.Transaction;
 import so.fox.blockchain.wallet.Account;
+import so.fox.blockchain.util.SerializationUtils;
 import so.fox.blockchain.wallet.Wallet;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.security.KeyFactory;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
-import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static so.fox.blockchain.core.CurrencyConstants.UNITS_PER_MAIN_UNIT;
 import static so.fox.blockchain.core.CurrencyConstants.DECIMALS;
@@ -26,14 +52,43 @@ import static so.fox.blockchain.core.CurrencyConstants.DECIMALS;
 @RestController
 @CrossOrigin
 @RequestMapping("/api")
-public class BlockchainController {
+public class BlockchainController implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(BlockchainController.class);
 
   private final Node node;
+  private final ObjectMapper objectMapper;
   private final long defaultFee = 50L;
+  private final int maxTxPage = 1000;
+  private final int maxBatch = 10_000;
+  private final int maxBatchBytes = 16 << 20;
+  private final int maxWaitSeconds = 300;
+  private final long heartbeatMillis = TimeUnit.SECONDS.toMillis(15);
+  private final int followChunkBytes = 64 << 10;
+  private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+  private final ThreadPoolExecutor followStreams;
+  private final long followTimeoutMillis;
 
   @Autowired
-  public BlockchainController(Node node) {
+  public BlockchainController(Node node, ObjectMapper objectMapper,
+                              @Value("${blockchain.web.follow-streams:16}") int maxFollowStreams,
+                              @Value("${blockchain.web.follow-timeout-ms:3600000}") long followTimeoutMillis) {
+    if (maxFollowStreams < 1) throw new IllegalArgumentException("blockchain.web.follow-streams must be positive");
     this.node = node;
+    this.objectMapper = objectMapper;
+    this.followTimeoutMillis = followTimeoutMillis;
+    AtomicInteger ids = new AtomicInteger();
+    this.followStreams = new ThreadPoolExecutor(maxFollowStreams, maxFollowStreams, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+      Thread t = new Thread(r, "block-follow-" + ids.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    this.followStreams.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void destroy() {
+    followStreams.shutdownNow();
   }
 
   private String formatAmount(long atomicAmount) {
@@ -63,36 +118,62 @@ public class BlockchainController {
   }
 
   @GetMapping("/account/{address}")
-  public ResponseEntity<Object> getAccount(@PathVariable String address) {
+  public ResponseEntity<Object> getAccount(@PathVariable String address, @RequestParam(required = false) Integer atHeight) {
     if ("node".equalsIgnoreCase(address)) {
       address = node.getNodeAddress();
     }
-    Account acc = node.getAccount(address);
+    int height = atHeight != null ? atHeight : node.getStateHeight();
+    if (height < 0) {
+      return ResponseEntity.badRequest().body(Map.of("error", "Invalid height"));
+    }
+    Account acc;
+    try {
+      acc = node.getAccount(address, height);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.status(404).body(Map.of("error", e.getMessage(), "oldestHeight", node.getOldestStateHeight()));
+    }
     if (acc == null) {
-      return ResponseEntity.status(404).body(Map.of("error", "Account not found"));
+      return ResponseEntity.status(404).body(Map.of("error", "Account not found", "height", height));
     }
     return ResponseEntity.ok(Map.of(
       "address", acc.getAddress(),
       "balance", formatAmount(acc.getBalance()),
       "nanoBalance", acc.getBalance(),
-      "nonce", acc.getNonce()
+      "nonce", acc.getNonce(),
+      "pendingNonce", node.getPendingNonce(acc.getAddress()),
+      "height", height
     ));
   }
 
   @GetMapping("/account/{address}/tx")
-  public ResponseEntity<Object> getAccountTXs(@PathVariable String address) {
-    if ("node".equalsIgnoreCase(address)) {
-      address = node.getNodeAddress();
-    }
-    List<Transaction> txs = node.getAccountTransactions(address);
-    return ResponseEntity.ok(Map.of(
-      "address", address,
-      "txs", txs
-    ));
+  public ResponseEntity<StreamingResponseBody> getAccountTXs(@PathVariable String address,
+                                                             @RequestParam(defaultValue = "-1") int before,
+                                                             @RequestParam(defaultValue = "100") int limit) {
+    String target = "node".equalsIgnoreCase(address) ? node.getNodeAddress() : address;
+    int pageSize = Math.max(1, Math.min(limit, maxTxPage));
+    StreamingResponseBody body = out -> {
+      try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+        gen.writeStartObject();
+        gen.writeStringField("address", target);
+        gen.writeArrayFieldStart("txs");
+        int next = node.getAccountTransactions(target, before, pageSize, tx -> {
+          try {
+            gen.writeObject(tx);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        gen.writeEndArray();
+        if (next >= 0) gen.writeNumberField("next", next);
+        else gen.writeNullField("next");
+        gen.writeEndObject();
+      }
+    };
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
   }
 
   @PostMapping("/tx/send")
-  public ResponseEntity<Object> sendTransaction(@RequestBody Map<String, String> request) {
+  public CompletableFuture<ResponseEntity<Object>> sendTransaction(@RequestBody Map<String, String> request) {
     try {
       String sender = request.get("sender");
       String recipient = request.get("recipient");
@@ -103,10 +184,10 @@ public class BlockchainController {
       String signatureB64 = request.get("signature");
       String publicKeyB64 = request.get("publicKey");
       if (sender == null || recipient == null || signatureB64 == null || publicKeyB64 == null || valueStr == null || nonceStr == null) {
-        return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Missing required fields."));
+        return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Missing required fields.")));
       }
       if (comment.length() > 255) {
-        return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid transaction: comment too long"));
+        return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid transaction: comment too long")));
       }
       long value;
       long fee;
@@ -114,7 +195,7 @@ public class BlockchainController {
         value = parseAmountToAtomic(valueStr);
         fee = (feeStr == null || feeStr.trim().isEmpty()) ? defaultFee : parseAmountToAtomic(feeStr);
       } catch (IllegalArgumentException e) {
-        return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid amount: " + e.getMessage()));
+        return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid amount: " + e.getMessage())));
       }
       long nonce = Long.parseLong(nonceStr);
       PublicKey publicKey;
@@ -126,28 +207,180 @@ public class BlockchainController {
         tx = new Transaction(sender, recipient, value, fee, nonce, comment, signatureFromNode);
         publicKey = nodeWallet.getPublicKey();
       } else {
-        byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyB64);
-        publicKey = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+        publicKey = node.getPipeline().publicKey(sender, publicKeyB64);
         tx = new Transaction(sender, recipient, value, fee, nonce, comment, signatureB64);
       }
-      String result = node.addTransaction(tx, publicKey);
-      if (result.isEmpty()) {
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-        executor.schedule(() -> {
-          List<Transaction> trx = node.getPendingTransactions();
-          if (!trx.isEmpty()){
-            node.mineBlock();
-          }
-        }, 10, TimeUnit.SECONDS);
-        executor.shutdown();
+      return node.submitTransaction(tx, publicKey).handle((result, error) -> {
+        if (error instanceof RejectedExecutionException) {
+          return ResponseEntity.status(429).body(Map.of("success", false, "message", error.getMessage()));
+        }
+        if (error != null) {
+          log.error("tx submission failed", error);
+          return ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Error: " + error.getMessage()));
+        }
+        if (!result.isEmpty()) {
+          return ResponseEntity.badRequest().body(Map.of("success", false, "message", result));
+        }
         return ResponseEntity.ok(Map.of("success", true, "message", "Transaction added", "txHash", tx.getHash()));
-      } else {
-        return ResponseEntity.badRequest().body(Map.of("success", false, "message", result));
-      }
+      });
     } catch (Exception e) {
-      e.printStackTrace();
-      return ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Error: " + e.getMessage()));
+      log.error("tx submission failed", e);
+      return completed(ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Error: " + e.getMessage())));
+    }
+  }
+
+  @PostMapping(value = "/tx/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public CompletableFuture<ResponseEntity<Object>> sendTransactionBatch(InputStream body) {
+    List<BatchItem> items = new ArrayList<>();
+    try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_ARRAY) {
+        return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Expected a JSON array of transactions.")));
+      }
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        if (items.size() >= maxBatch) {
+          return completed(ResponseEntity.status(413).body(Map.of("success", false, "message", "Batch too large. Max allowed: " + maxBatch)));
+        }
+        Map<String, String> fields = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          JsonToken token = parser.nextToken();
+          if (token.isScalarValue()) fields.put(name, token == JsonToken.VALUE_NULL ? null : parser.getText());
+          else parser.skipChildren();
+        }
+        items.add(batchItem(fields));
+      }
+      if (parser.currentToken() != JsonToken.END_ARRAY) {
+        return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Expected a JSON array of transactions.")));
+      }
+    } catch (IOException e) {
+      return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid JSON: " + e.getMessage())));
     }
+    return submitBatch(items);
+  }
+
+  @PostMapping(value = "/tx/batch", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public CompletableFuture<ResponseEntity<Object>> sendTransactionBatchBinary(InputStream body) {
+    List<BatchItem> items = new ArrayList<>();
+    try {
+      byte[] bytes = body.readNBytes(maxBatchBytes + 1);
+      if (bytes.length > maxBatchBytes) {
+        return completed(ResponseEntity.status(413).body(Map.of("success", false, "message", "Batch too large. Max bytes: " + maxBatchBytes)));
+      }
+      ByteBuffer buf = ByteBuffer.wrap(bytes);
+      while (buf.hasRemaining()) {
+        if (items.size() >= maxBatch) {
+          return completed(ResponseEntity.status(413).body(Map.of("success", false, "message", "Batch too large. Max allowed: " + maxBatch)));
+        }
+        Transaction record = SerializationUtils.decodeTransaction(buf);
+        Transaction tx = new Transaction(record.getSender(), record.getRecipient(), record.getValue(), record.getFee(), record.getNonce(),
+          record.getComment(), record.getSignature());
+        BatchItem item = new BatchItem(tx, record.getPublicKey());
+        if (record.getPublicKey() == null || record.getSignature() == null) item.result = "Missing required fields.";
+        else if (record.getComment() != null && record.getComment().length() > 255) item.result = "Invalid transaction: comment too long";
+        else if (record.getValue() < 1) item.result = "Invalid amount: value must be at least 1 atomic unit";
+        else if (record.getFee() < 0) item.result = "Invalid amount: fee must not be negative";
+        items.add(item);
+      }
+    } catch (IOException | RuntimeException e) {
+      return completed(ResponseEntity.badRequest().body(Map.of("success", false, "message", "Invalid transaction record: " + e.getMessage())));
+    }
+    return submitBatch(items);
+  }
+
+  private BatchItem batchItem(Map<String, String> fields) {
+    String sender = fields.get("sender");
+    String recipient = fields.get("recipient");
+    String valueStr = fields.get("value");
+    String nonceStr = fields.get("nonce");
+    String signatureB64 = fields.get("signature");
+    String publicKeyB64 = fields.get("publicKey");
+    String comment = fields.getOrDefault("comment", "");
+    if (sender == null || recipient == null || signatureB64 == null || publicKeyB64 == null || valueStr == null || nonceStr == null) {
+      return BatchItem.rejected("Missing required fields.");
+    }
+    if (comment == null) comment = "";
+    if (comment.length() > 255) {
+      return BatchItem.rejected("Invalid transaction: comment too long");
+    }
+    long nonce;
+    try {
+      nonce = Long.parseLong(nonceStr.trim());
+    } catch (NumberFormatException e) {
+      return BatchItem.rejected("Invalid nonce: " + nonceStr);
+    }
+    try {
+      long value = parseAtomic(valueStr);
+      String feeStr = fields.get("fee");
+      long fee = (feeStr == null || feeStr.trim().isEmpty()) ? defaultFee : parseAtomic(feeStr);
+      return new BatchItem(new Transaction(sender, recipient, value, fee, nonce, comment, signatureB64), publicKeyB64);
+    } catch (IllegalArgumentException e) {
+      return BatchItem.rejected("Invalid amount: " + e.getMessage());
+    }
+  }
+
+  private long parseAtomic(String amountStr) {
+    for (int i = 0; i < amountStr.length(); i++) {
+      char c = amountStr.charAt(i);
+      if (c < '0' || c > '9' || i >= 18) return parseAmountToAtomic(amountStr);
+    }
+    return amountStr.isEmpty() ? parseAmountToAtomic(amountStr) : Long.parseLong(amountStr);
+  }
+
+  private CompletableFuture<ResponseEntity<Object>> submitBatch(List<BatchItem> items) {
+    Map<String, PublicKey> keys = new HashMap<>();
+    List<Transaction> txs = new ArrayList<>(items.size());
+    List<PublicKey> senderKeys = new ArrayList<>(items.size());
+    List<BatchItem> submitted = new ArrayList<>(items.size());
+    for (BatchItem item : items) {
+      if (item.result != null) continue;
+      String sender = item.tx.getSender();
+      PublicKey key = keys.get(sender + ":" + item.publicKey);
+      if (key == null) {
+        try {
+          key = node.getPipeline().publicKey(sender, item.publicKey);
+          keys.put(sender + ":" + item.publicKey, key);
+        } catch (Exception e) {
+          item.result = "Invalid public key";
+          continue;
+        }
+      }
+      txs.add(item.tx);
+      senderKeys.add(key);
+      submitted.add(item);
+    }
+    return node.submitTransactions(txs, senderKeys).handle((results, error) -> {
+      if (error != null) {
+        log.error("tx batch submission failed", error);
+        return ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Error: " + error.getMessage()));
+      }
+      for (int i = 0; i < submitted.size(); i++) {
+        submitted.get(i).result = results.get(i);
+      }
+      List<Map<String, Object>> out = new ArrayList<>(items.size());
+      int accepted = 0;
+      for (int i = 0; i < items.size(); i++) {
+        BatchItem item = items.get(i);
+        boolean success = item.result.isEmpty();
+        if (success) accepted++;
+        String hash = item.tx == null ? "" : item.tx.getHash();
+        out.add(Map.of("index", i, "success", success, "message", success ? "Transaction added" : item.result, "txHash", hash));
+      }
+      log.info("tx batch processed items={} accepted={}", items.size(), accepted);
+      return ResponseEntity.ok(Map.of("success", true, "accepted", accepted, "rejected", items.size() - accepted, "results", out));
+    });
+  }
+
+  private static CompletableFuture<ResponseEntity<Object>> completed(ResponseEntity<Object> response) {
+    return CompletableFuture.completedFuture(response);
+  }
+
+  @GetMapping("/tx/{hash}/proof")
+  public ResponseEntity<Object> getTransactionProof(@PathVariable String hash) {
+    MerkleProof proof = node.getTransactionProof(hash.toLowerCase());
+    if (proof == null) {
+      return ResponseEntity.status(404).body(Map.of("error", "Transaction not found in any block"));
+    }
+    return ResponseEntity.ok(proof);
   }
 
   @GetMapping("/tx/pending")
@@ -155,19 +388,26 @@ public class BlockchainController {
     return node.getPendingTransactions();
   }
 
+  @GetMapping("/peers")
+  public List<Map<String, Object>> getPeers() {
+    return node.getNetwork() == null ? List.of() : node.getNetwork().getPeers();
+  }
+
   @PostMapping("/mine")
-  public ResponseEntity<Object> mine() {
-    try {
-      Block block = node.mineBlock();
+  public CompletableFuture<ResponseEntity<Object>> mine() {
+    return node.requestBlock().handle((block, error) -> {
+      if (error != null) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Mining error: " + cause.getMessage()));
+      }
       return ResponseEntity.ok(Map.of(
         "success", true,
         "message", "Block mined successfully!",
         "blockHash", block.getHash(),
-        "txCount", block.getTransactions().size()
+        "txCount", block.getTransactions().size(),
+        "hashRate", Math.round(node.getMiner().getHashRate())
       ));
-    } catch (Exception e) {
-      return ResponseEntity.internalServerError().body(Map.of("success", false, "message", "Mining error: " + e.getMessage()));
-    }
+    });
   }
 
   @GetMapping("/block/latest")
@@ -183,4 +423,239 @@ public class BlockchainController {
     }
     return ResponseEntity.ok(block);
   }
-}
\ No newline at end of file
+
+  @GetMapping("/blocks")
+  public ResponseEntity<StreamingResponseBody> getBlocks(@RequestParam(defaultValue = "0") int from,
+                                                         @RequestParam(required = false) Integer to,
+                                                         @RequestParam(defaultValue = "json") String format) {
+    if (from < 0 || (to != null && to < from)) {
+      return error("Invalid block range");
+    }
+    boolean binary = "binary".equalsIgnoreCase(format);
+    if (!binary && !"json".equalsIgnoreCase(format)) {
+      return error("Unsupported format: " + format);
+    }
+    return ResponseEntity.ok().contentType(binary ? MediaType.APPLICATION_OCTET_STREAM : NDJSON)
+        .body(blocks(from, to != null ? to : node.getHeight(), 0, binary));
+  }
+
+  @GetMapping(value = "/blocks", params = "follow=true")
+  public ResponseEntity<ResponseBodyEmitter> followBlocks(@RequestParam(defaultValue = "0") int from,
+                                                          @RequestParam(required = false) Integer to,
+                                                          @RequestParam(defaultValue = "30") int wait,
+                                                          @RequestParam(defaultValue = "json") String format) {
+    if (from < 0 || (to != null && to < from)) {
+      return followError(400, "Invalid block range");
+    }
+    boolean binary = "binary".equalsIgnoreCase(format);
+    if (!binary && !"json".equalsIgnoreCase(format)) {
+      return followError(400, "Unsupported format: " + format);
+    }
+    long waitMillis = TimeUnit.SECONDS.toMillis(Math.max(0, Math.min(wait, maxWaitSeconds)));
+    return follow(binary ? MediaType.APPLICATION_OCTET_STREAM : NDJSON,
+        blocks(from, to != null ? to : Integer.MAX_VALUE, waitMillis, binary));
+  }
+
+  private StreamingResponseBody blocks(int from, int last, long waitMillis, boolean binary) {
+    return out -> {
+      if (binary) {
+        DataOutputStream data = new DataOutputStream(out);
+        stream(from, last, waitMillis, data::flush, data::flush, (height, header, record) -> {
+          data.writeInt(height);
+          data.writeInt(record.length);
+          data.write(record);
+        });
+        data.flush();
+        return;
+      }
+      try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+        gen.setRootValueSeparator(new SerializedString("\n"));
+        stream(from, last, waitMillis, gen::flush, gen::flush, (height, header, record) -> writeBlock(gen, height, record));
+        gen.writeRaw('\n');
+      }
+    };
+  }
+
+  @GetMapping("/blocks/events")
+  public ResponseEntity<ResponseBodyEmitter> getBlockEvents(@RequestParam(required = false) Integer from,
+                                                            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                                            @RequestParam(defaultValue = "300") int wait) {
+    int start;
+    try {
+      start = lastEventId != null ? Integer.parseInt(lastEventId.trim()) + 1 : from != null ? from : node.getHeight() + 1;
+    } catch (NumberFormatException e) {
+      return followError(400, "Invalid Last-Event-ID");
+    }
+    if (start < 0) {
+      return followError(400, "Invalid block range");
+    }
+    long waitMillis = TimeUnit.SECONDS.toMillis(Math.max(0, Math.min(wait, maxWaitSeconds)));
+    StreamingResponseBody body = out -> {
+      try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+        gen.setRootValueSeparator(new SerializedString(""));
+        gen.writeRaw("retry: 1000\n\n");
+        gen.flush();
+        stream(start, Integer.MAX_VALUE, waitMillis, gen::flush, () -> {
+          gen.writeRaw(": keepalive\n\n");
+          gen.flush();
+        }, (height, header, record) -> {
+          gen.writeRaw("id: " + height + "\nevent: block\ndata: ");
+          writeBlock(gen, height, record);
+          gen.writeRaw("\n\n");
+          gen.flush();
+        });
+      }
+    };
+    return follow(MediaType.TEXT_EVENT_STREAM, body);
+  }
+
+  private ResponseEntity<ResponseBodyEmitter> follow(MediaType type, StreamingResponseBody body) {
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter(followTimeoutMillis);
+    Future<?> task;
+    try {
+      task = followStreams.submit(() -> {
+        try (OutputStream out = new EmitterStream(emitter, followChunkBytes)) {
+          body.writeTo(out);
+        } catch (Exception e) {
+          emitter.completeWithError(e);
+          return;
+        }
+        emitter.complete();
+      });
+    } catch (RejectedExecutionException e) {
+      log.warn("block stream rejected active={} reason=too many follow streams", followStreams.getActiveCount());
+      return followError(503, "Too many block streams, retry later");
+    }
+    emitter.onTimeout(() -> task.cancel(true));
+    emitter.onError(error -> task.cancel(true));
+    emitter.onCompletion(() -> task.cancel(true));
+    return ResponseEntity.ok().contentType(type).body(emitter);
+  }
+
+  private ResponseEntity<ResponseBodyEmitter> followError(int status, String message) {
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+    try {
+      emitter.send(objectMapper.writeValueAsBytes(Map.of("error", message)));
+      emitter.complete();
+    } catch (IOException e) {
+      emitter.completeWithError(e);
+    }
+    return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(emitter);
+  }
+
+  private ResponseEntity<StreamingResponseBody> error(String message) {
+    StreamingResponseBody body = out -> objectMapper.writeValue(out, Map.of("error", message));
+    return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(body);
+  }
+
+  private void stream(int from, int to, long waitMillis, Flusher flush, Flusher heartbeat, Node.BlockSink sink) throws IOException {
+    int[] next = {from};
+    String[] last = {null};
+    long deadline = System.currentTimeMillis() + waitMillis;
+    boolean stalled = false;
+    while (next[0] <= to) {
+      int streamed = node.streamBlocks(next[0], to, last[0], (height, header, record) -> {
+        sink.accept(height, header, record);
+        next[0] = height + 1;
+        last[0] = header.getHash();
+      });
+      if (streamed > 0) {
+        deadline = System.currentTimeMillis() + waitMillis;
+        stalled = false;
+        continue;
+      }
+      if (node.getHeight() >= next[0]) {
+        if (stalled) {
+          log.info("block stream ended height={} reason=chain reorganized", next[0]);
+          return;
+        }
+        stalled = true;
+        continue;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) return;
+      flush.flush();
+      try {
+        if (!node.awaitHeight(next[0], Math.min(remaining, heartbeatMillis))) heartbeat.flush();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private void writeBlock(JsonGenerator gen, int height, byte[] record) throws IOException {
+    Block block = SerializationUtils.decodeBlock(record);
+    gen.writeStartObject();
+    gen.writeNumberField("height", height);
+    gen.writeStringField("hash", block.getHash());
+    gen.writeStringField("previousHash", block.getPreviousHash());
+    gen.writeNumberField("timestamp", block.getTimestamp());
+    gen.writeNumberField("nonce", block.getNonce());
+    gen.writeNumberField("bits", block.getBits());
+    gen.writeStringField("merkleRoot", block.getMerkleRoot());
+    gen.writeArrayFieldStart("transactions");
+    for (Transaction tx : block.getTransactions()) {
+      gen.writeObject(tx);
+    }
+    gen.writeEndArray();
+    gen.writeEndObject();
+  }
+
+  private static final class BatchItem {
+    final Transaction tx;
+    final String publicKey;
+    String result;
+
+    BatchItem(Transaction tx, String publicKey) {
+      this.tx = tx;
+      this.publicKey = publicKey;
+    }
+
+    static BatchItem rejected(String reason) {
+      BatchItem item = new BatchItem(null, null);
+      item.result = reason;
+      return item;
+    }
+  }
+
+  private interface Flusher {
+    void flush() throws IOException;
+  }
+
+  private static final class EmitterStream extends OutputStream {
+    private final ResponseBodyEmitter emitter;
+    private final int chunkBytes;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    EmitterStream(ResponseBodyEmitter emitter, int chunkBytes) {
+      this.emitter = emitter;
+      this.chunkBytes = chunkBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      buffer.write(b);
+      if (buffer.size() >= chunkBytes) flush();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      buffer.write(b, off, len);
+      if (buffer.size() >= chunkBytes) flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (buffer.size() == 0) return;
+      byte[] chunk = buffer.toByteArray();
+      buffer.reset();
+      emitter.send(chunk);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package so.fox.blockchain.core;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.WriteBatch;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+
+public class AccountStore {
+  private static final String PREFIX = "account_";
+  private static final int SHARDS = 64;
+
+  private final DB db;
+  private final Shard[] shards = new Shard[SHARDS];
+
+  public AccountStore(DB db, int cacheSize) {
+    this.db = db;
+    int perShard = Math.max(1, cacheSize / SHARDS);
+    for (int i = 0; i < SHARDS; i++) {
+      shards[i] = new Shard(perShard);
+    }
+  }
+
+  public Account get(String address) {
+    Shard shard = shard(address);
+    long version;
+    synchronized (shard) {
+      Account acc = shard.dirty.get(address);
+      if (acc == null) acc = shard.cache.get(address);
+      if (acc != null) {
+        shard.hits++;
+        return acc;
+      }
+      shard.misses++;
+      version = shard.version;
+    }
+    Account loaded = load(address);
+    if (loaded != null) {
+      synchronized (shard) {
+        if (shard.version == version) shard.cache.put(address, loaded);
+      }
+    }
+    return loaded;
+  }
+
+  public void update(Collection<Account> changed) {
+    for (Account acc : changed) {
+      Shard shard = shard(acc.getAddress());
+      synchronized (shard) {
+        shard.version++;
+        shard.cache.remove(acc.getAddress());
+        shard.dirty.put(acc.getAddress(), acc);
+      }
+    }
+  }
+
+  public List<Account> flush(WriteBatch batch) {
+    List<Account> flushed = new ArrayList<>();
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        flushed.addAll(shard.dirty.values());
+      }
+    }
+    for (Account acc : flushed) {
+      batch.put(key(acc.getAddress()), SerializationUtils.encodeAccount(acc));
+    }
+    return flushed;
+  }
+
+  public void flushed(List<Account> written) {
+    for (Account acc : written) {
+      Shard shard = shard(acc.getAddress());
+      synchronized (shard) {
+        if (shard.dirty.remove(acc.getAddress(), acc)) {
+          shard.cache.put(acc.getAddress(), acc);
+        }
+      }
+    }
+  }
+
+  int clear() throws IOException {
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        shard.version++;
+        shard.dirty.clear();
+        shard.cache.clear();
+      }
+    }
+    byte[] prefix = bytes(PREFIX);
+    int deleted = 0;
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seek(prefix);
+      WriteBatch batch = db.createWriteBatch();
+      while (iterator.hasNext()) {
+        byte[] key = iterator.next().getKey();
+        if (!startsWith(key, prefix)) break;
+        batch.delete(key);
+        if (++deleted % 10_000 == 0) {
+          db.write(batch);
+          batch.close();
+          batch = db.createWriteBatch();
+        }
+      }
+      db.write(batch);
+      batch.close();
+    }
+    return deleted;
+  }
+
+  void forEachRecord(ReadOptions options, Consumer<byte[]> sink) throws IOException {
+    byte[] prefix = bytes(PREFIX);
+    try (DBIterator iterator = db.iterator(options)) {
+      iterator.seek(prefix);
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (!startsWith(entry.getKey(), prefix)) break;
+        sink.accept(entry.getValue());
+      }
+    }
+  }
+
+  public double getHitRate() {
+    long hits = 0;
+    long total = 0;
+    for (Shard shard : shards) {
+      synchronized (shard) {
+        hits += shard.hits;
+        total += shard.hits + shard.misses;
+      }
+    }
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  private Account load(String address) {
+    byte[] value = db.get(key(address));
+    if (value == null) return null;
+    try {
+      return SerializationUtils.decodeAccount(value);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading account " + address + ": " + e.getMessage(), e);
+    }
+  }
+
+  private Shard shard(String address) {
+    return shards[Math.floorMod(address.hashCode(), SHARDS)];
+  }
+
+  private static boolean startsWith(byte[] key, byte[] prefix) {
+    return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+  static byte[] key(String address) {
+    return bytes(PREFIX + address);
+  }
+
+  private static final class Shard {
+    final Map<String, Account> dirty = new HashMap<>();
+    final Map<String, Account> cache;
+    long version;
+    long hits;
+    long misses;
+
+    Shard(int capacity) {
+      this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Account> eldest) {
+          return size() > capacity;
+        }
+      };
+    }
+  }
+}
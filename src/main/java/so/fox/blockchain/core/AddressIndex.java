@@ -0,0 +1,148 @@
+package so.fox.blockchain.core;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.bytes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.WriteBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AddressIndex {
+  private static final Logger log = LoggerFactory.getLogger(AddressIndex.class);
+  private static final byte[] PREFIX = bytes("atx_");
+  private static final byte[] TX_PREFIX = bytes("txi_");
+  private static final byte[] HEIGHT_KEY = bytes("meta_atx");
+  private static final byte VERSION = 2;
+  private static final byte[] EMPTY = new byte[0];
+
+  private final DB db;
+  private volatile int height = -1;
+
+  public AddressIndex(DB db) {
+    this.db = db;
+  }
+
+  public void open(ChainStore chain) throws IOException {
+    byte[] value = db.get(HEIGHT_KEY);
+    height = value == null || value.length < 5 || value[4] != VERSION ? -1 : ByteBuffer.wrap(value).getInt();
+    int tip = chain.getHeight();
+    if (height >= tip) return;
+    int from = height + 1;
+    while (height < tip) {
+      try (WriteBatch batch = db.createWriteBatch()) {
+        int end = Math.min(tip, height + 1000);
+        for (int h = height + 1; h <= end; h++) {
+          write(batch, h, chain.getBlock(h));
+        }
+        db.write(batch);
+        height = end;
+      }
+    }
+    log.info("transactions indexed from={} to={}", from, tip);
+  }
+
+  void committed(int blockHeight) {
+    height = blockHeight;
+  }
+
+  void write(WriteBatch batch, int blockHeight, Block block) {
+    List<Transaction> txs = block.getTransactions();
+    for (int i = 0; i < txs.size(); i++) {
+      Transaction tx = txs.get(i);
+      batch.put(txKey(tx.id()), ByteBuffer.allocate(8).putInt(blockHeight).putInt(i).array());
+      if (!tx.isCoinbase()) batch.put(key(tx.getSender(), blockHeight, i), EMPTY);
+      if (!tx.getRecipient().equals(tx.getSender())) {
+        batch.put(key(tx.getRecipient(), blockHeight, i), EMPTY);
+      }
+    }
+    batch.put(HEIGHT_KEY, ByteBuffer.allocate(5).putInt(blockHeight).put(VERSION).array());
+  }
+
+  void erase(WriteBatch batch, int blockHeight, Block block) {
+    List<Transaction> txs = block.getTransactions();
+    for (int i = 0; i < txs.size(); i++) {
+      Transaction tx = txs.get(i);
+      batch.delete(txKey(tx.id()));
+      if (!tx.isCoinbase()) batch.delete(key(tx.getSender(), blockHeight, i));
+      batch.delete(key(tx.getRecipient(), blockHeight, i));
+    }
+    batch.put(HEIGHT_KEY, ByteBuffer.allocate(5).putInt(blockHeight - 1).put(VERSION).array());
+  }
+
+  public TxRef locate(Hash txHash) {
+    byte[] value = db.get(txKey(txHash));
+    if (value == null) return null;
+    ByteBuffer buf = ByteBuffer.wrap(value);
+    return new TxRef(buf.getInt(), buf.getInt());
+  }
+
+  public List<TxRef> find(String address, int beforeHeight, int limit) {
+    List<TxRef> result = new ArrayList<>();
+    byte[] prefix = addressPrefix(address);
+    int start = beforeHeight < 0 ? Integer.MAX_VALUE : beforeHeight - 1;
+    if (start < 0) return result;
+    int lastHeight = -1;
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seek(key(prefix, start, 0));
+      while (iterator.hasNext()) {
+        byte[] key = iterator.next().getKey();
+        if (!startsWith(key, prefix)) break;
+        ByteBuffer buf = ByteBuffer.wrap(key, prefix.length, 8);
+        int h = Integer.MAX_VALUE - buf.getInt();
+        int index = Integer.MAX_VALUE - buf.getInt();
+        if (result.size() >= limit && h != lastHeight) break;
+        result.add(new TxRef(h, index));
+        lastHeight = h;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading address index: " + e.getMessage(), e);
+    }
+    return result;
+  }
+
+  private static byte[] key(String address, int blockHeight, int index) {
+    return key(addressPrefix(address), blockHeight, index);
+  }
+
+  private static byte[] key(byte[] prefix, int blockHeight, int index) {
+    return ByteBuffer.allocate(prefix.length + 8).put(prefix)
+      .putInt(Integer.MAX_VALUE - blockHeight)
+      .putInt(Integer.MAX_VALUE - index)
+      .array();
+  }
+
+  private static byte[] txKey(Hash txHash) {
+    return ChainStore.concat(TX_PREFIX, txHash.bytes());
+  }
+
+  private static byte[] addressPrefix(String address) {
+    byte[] raw = address.getBytes(StandardCharsets.UTF_8);
+    return ByteBuffer.allocate(PREFIX.length + 2 + raw.length).put(PREFIX).putShort((short) raw.length).put(raw).array();
+  }
+
+  private static boolean startsWith(byte[] key, byte[] prefix) {
+    return key.length == prefix.length + 8 && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+  public int getHeight() { return height; }
+
+  public static final class TxRef {
+    private final int height;
+    private final int index;
+
+    TxRef(int height, int index) {
+      this.height = height;
+      this.index = index;
+    }
+
+    public int getHeight() { return height; }
+    public int getIndex() { return index; }
+  }
+}
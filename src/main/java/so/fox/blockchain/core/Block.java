@@ -1,8 +1,9 @@
 package so.fox.blockchain.core;
 
 import java.io.Serializable;
-import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Block implements Serializable {
@@ -14,67 +15,89 @@ public class Block implements Serializable {
   private int nonce;
   private final List<Transaction> transactions;
   private final String merkleRoot;
+  private final int bits;
+  private transient MerkleTree tree;
+  private transient Hash id;
 
   public Block(String previousHash, List<Transaction> transactions) {
+    this(previousHash, transactions, 0);
+  }
+
+  public Block(String previousHash, List<Transaction> transactions, int bits) {
     this.previousHash = previousHash;
     this.transactions = transactions;
     this.timestamp = System.currentTimeMillis();
     this.nonce = 0;
+    this.bits = bits;
     this.merkleRoot = calculateMerkleRoot();
     this.hash = calculateHash();
   }
 
+  public Block(String previousHash, List<Transaction> transactions, MerkleTree tree, int bits, long timestamp) {
+    if (tree.size() != transactions.size()) {
+      throw new IllegalArgumentException("Merkle tree does not match transactions");
+    }
+    this.previousHash = previousHash;
+    this.transactions = transactions;
+    this.timestamp = timestamp;
+    this.nonce = 0;
+    this.bits = bits;
+    this.tree = tree;
+    this.merkleRoot = tree.getRoot();
+    this.hash = calculateHash();
+  }
+
+  public Block(String previousHash, String hash, long timestamp, int nonce, List<Transaction> transactions, String merkleRoot) {
+    this(previousHash, hash, timestamp, nonce, transactions, merkleRoot, 0);
+  }
+
+  public Block(String previousHash, String hash, long timestamp, int nonce, List<Transaction> transactions, String merkleRoot, int bits) {
+    this.previousHash = previousHash;
+    this.hash = hash;
+    this.timestamp = timestamp;
+    this.nonce = nonce;
+    this.transactions = transactions;
+    this.merkleRoot = merkleRoot;
+    this.bits = bits;
+  }
+
+  public static Block genesis(long timestamp, int difficulty) {
+    Block genesis = new Block("0", null, timestamp, 0, new ArrayList<>(), "0");
+    genesis.applyNonce(0);
+    genesis.mineBlock(difficulty);
+    return genesis;
+  }
+
   public String calculateHash() {
-    try {
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      String blockData = previousHash + timestamp + nonce + merkleRoot;
-      byte[] hashBytes = digest.digest(blockData.getBytes("UTF-8"));
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hashBytes) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) hexString.append('0');
-        hexString.append(hex);
-      }
-      return hexString.toString();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+    String blockData = previousHash + timestamp + nonce + BlockHeader.hashSuffix(merkleRoot, bits);
+    return Hash.sha256(blockData.getBytes(StandardCharsets.UTF_8)).toHex();
+  }
+
+  public BlockHeader header() {
+    return new BlockHeader(previousHash, hash, timestamp, nonce, merkleRoot, bits);
+  }
+
+  public Hash id() {
+    Hash h = id;
+    if (h == null) {
+      h = Hash.parse(hash);
+      id = h;
     }
+    return h;
   }
 
   private String calculateMerkleRoot() {
-    if (transactions.isEmpty()) {
-      return "0";
-    }
-    List<String> tree = new ArrayList<>();
-    for (Transaction tx : transactions) {
-      tree.add(tx.getHash());
-    }
-    while (tree.size() > 1) {
-      List<String> newTree = new ArrayList<>();
-      for (int i = 0; i < tree.size(); i += 2) {
-        String left = tree.get(i);
-        String right = (i + 1 < tree.size()) ? tree.get(i + 1) : left;
-        newTree.add(hashPair(left, right));
-      }
-      tree = newTree;
-    }
-    return tree.get(0);
+    tree = MerkleTree.of(transactions);
+    return tree.getRoot();
   }
 
-  private String hashPair(String left, String right) {
-    try {
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      byte[] hashBytes = digest.digest((left + right).getBytes("UTF-8"));
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hashBytes) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) hexString.append('0');
-        hexString.append(hex);
-      }
-      return hexString.toString();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+  public MerkleProof getProof(int index) {
+    MerkleTree current = tree;
+    if (current == null) {
+      current = MerkleTree.of(transactions);
+      tree = current;
     }
+    return current.proof(index);
   }
 
   public void mineBlock(int difficulty) {
@@ -82,11 +105,30 @@ public class Block implements Serializable {
     while (!hash.substring(0, difficulty).equals(target)) {
       nonce++;
       hash = calculateHash();
+      id = null;
     }
   }
 
+  byte[] headerPrefix() {
+    return (previousHash + timestamp).getBytes(StandardCharsets.UTF_8);
+  }
+
+  byte[] headerSuffix() {
+    return BlockHeader.hashSuffix(merkleRoot, bits).getBytes(StandardCharsets.UTF_8);
+  }
+
+  void applyNonce(int nonce) {
+    this.nonce = nonce;
+    this.hash = calculateHash();
+    this.id = null;
+  }
+
   public String getHash() { return hash; }
   public String getPreviousHash() { return previousHash; }
   public long getTimestamp() { return timestamp; }
-  public List<Transaction> getTransactions() { return new ArrayList<>(transactions); }
+  public int getNonce() { return nonce; }
+  public String getMerkleRoot() { return merkleRoot; }
+  public int getBits() { return bits; }
+  public List<Transaction> getTransactions() { return Collections.unmodifiableList(transactions); }
+  Transaction getTransaction(int index) { return transactions.get(index); }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package so.fox.blockchain.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+final class BlockArchive {
+  private static final Logger log = LoggerFactory.getLogger(BlockArchive.class);
+  private static final int MAGIC = 0x464F5842;
+  private static final int TRAILER_SIZE = 4 + 4 + 4 + 4;
+  private static final int INDEX_STRIDE = 64;
+  private static final long MAX_SEGMENT_BYTES = 256L << 20;
+  private static final String SUFFIX = ".seg";
+
+  private final File dir;
+  private final int segmentBlocks;
+  private volatile Segment[] segments = new Segment[0];
+
+  BlockArchive(File dir, int segmentBlocks) {
+    this.dir = dir;
+    this.segmentBlocks = segmentBlocks;
+  }
+
+  void open(int archived) throws IOException {
+    File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX) || name.endsWith(SUFFIX + ".tmp"));
+    if (files == null) files = new File[0];
+    List<Segment> loaded = new ArrayList<>();
+    for (File file : files) {
+      if (file.getName().endsWith(".tmp") || first(file) > archived) {
+        Files.delete(file.toPath());
+        log.info("stale archive segment removed file={}", file);
+        continue;
+      }
+      loaded.add(Segment.map(file));
+    }
+    loaded.sort(Comparator.comparingInt(Segment::getFirst));
+    int expected = loaded.isEmpty() ? archived + 1 : loaded.get(0).first;
+    for (Segment segment : loaded) {
+      if (segment.first != expected) throw new IOException("Archive segment missing for height " + expected);
+      expected = segment.getLast() + 1;
+    }
+    if (archived >= 0 && (loaded.isEmpty() || expected != archived + 1)) throw new IOException("Archive ends at " + (expected - 1) + ", expected " + archived);
+    segments = loaded.toArray(new Segment[0]);
+    if (!loaded.isEmpty()) log.info("block archive opened segments={} from={} to={} bytes={}", loaded.size(), loaded.get(0).first, archived, getBytes());
+  }
+
+  int getHeight() {
+    Segment[] current = segments;
+    return current.length == 0 ? -1 : current[current.length - 1].getLast();
+  }
+
+  int getSegmentCount() { return segments.length; }
+
+  long getBytes() {
+    long total = 0;
+    for (Segment segment : segments) {
+      total += segment.map.capacity();
+    }
+    return total;
+  }
+
+  byte[] read(int number) {
+    Segment[] current = segments;
+    int low = 0;
+    int high = current.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      Segment segment = current[mid];
+      if (number < segment.first) high = mid - 1;
+      else if (number > segment.getLast()) low = mid + 1;
+      else return segment.read(number);
+    }
+    return null;
+  }
+
+  Segment write(int first, int limit, IntFunction<byte[]> records) throws IOException {
+    if (limit - first + 1 < segmentBlocks) return null;
+    Files.createDirectories(dir.toPath());
+    File file = new File(dir, String.format("blocks-%010d", first) + SUFFIX);
+    File tmp = new File(dir, file.getName() + ".tmp");
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING)) {
+      List<Integer> index = new ArrayList<>();
+      byte[] buffer = new byte[1 << 16];
+      long offset = 0;
+      int count = 0;
+      while (count < segmentBlocks && offset < MAX_SEGMENT_BYTES) {
+        byte[] record = records.apply(first + count);
+        if (record == null) throw new IOException("Missing block " + (first + count));
+        if (count % INDEX_STRIDE == 0) index.add((int) offset);
+        deflater.reset();
+        deflater.setInput(record);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+          if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+          length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        ByteBuffer head = ByteBuffer.allocate(8).putInt(record.length).putInt(length);
+        head.flip();
+        offset += writeFully(channel, head) + writeFully(channel, ByteBuffer.wrap(buffer, 0, length));
+        count++;
+      }
+      ByteBuffer footer = ByteBuffer.allocate(index.size() * 4 + TRAILER_SIZE);
+      for (int position : index) {
+        footer.putInt(position);
+      }
+      footer.putInt(first).putInt(count).putInt((int) offset).putInt(MAGIC);
+      footer.flip();
+      writeFully(channel, footer);
+      channel.force(true);
+    } finally {
+      deflater.end();
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return Segment.map(file);
+  }
+
+  void publish(Segment segment) {
+    Segment[] current = segments;
+    if (segment.first != getHeight() + 1 && current.length > 0) throw new IllegalStateException("Archive segment " + segment.first + " does not follow " + getHeight());
+    Segment[] next = Arrays.copyOf(current, current.length + 1);
+    next[current.length] = segment;
+    segments = next;
+  }
+
+  void discard(Segment segment) {
+    try {
+      Files.deleteIfExists(segment.file.toPath());
+    } catch (IOException e) {
+      log.warn("archive segment not deleted file={}", segment.file, e);
+    }
+  }
+
+  List<Segment> truncate(int from) {
+    Segment[] current = segments;
+    int keep = current.length;
+    while (keep > 0 && current[keep - 1].getLast() >= from) {
+      keep--;
+    }
+    segments = Arrays.copyOf(current, keep);
+    return Arrays.asList(current).subList(keep, current.length);
+  }
+
+  private static int first(File file) {
+    String name = file.getName();
+    try {
+      return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    } catch (RuntimeException e) {
+      return Integer.MAX_VALUE;
+    }
+  }
+
+  private static int writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+    int written = buf.remaining();
+    while (buf.hasRemaining()) channel.write(buf);
+    return written;
+  }
+
+  static final class Segment {
+    private final File file;
+    private final MappedByteBuffer map;
+    private final int first;
+    private final int count;
+    private final int[] index;
+
+    private Segment(File file, MappedByteBuffer map, int first, int count, int[] index) {
+      this.file = file;
+      this.map = map;
+      this.first = first;
+      this.count = count;
+      this.index = index;
+    }
+
+    static Segment map(File file) throws IOException {
+      MappedByteBuffer map;
+      try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        if (channel.size() < TRAILER_SIZE || channel.size() > Integer.MAX_VALUE) throw new IOException("Bad archive segment size: " + file);
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      int end = map.capacity() - TRAILER_SIZE;
+      int first = map.getInt(end);
+      int count = map.getInt(end + 4);
+      int data = map.getInt(end + 8);
+      if (map.getInt(end + 12) != MAGIC || count < 1 || data < 0 || data > end) throw new IOException("Not an archive segment: " + file);
+      int[] index = new int[(count + INDEX_STRIDE - 1) / INDEX_STRIDE];
+      if (data + index.length * 4 != end) throw new IOException("Corrupt archive index: " + file);
+      for (int i = 0; i < index.length; i++) {
+        index[i] = map.getInt(data + i * 4);
+      }
+      return new Segment(file, map, first, count, index);
+    }
+
+    int getFirst() { return first; }
+
+    int getLast() { return first + count - 1; }
+
+    byte[] read(int number) {
+      int slot = number - first;
+      int offset = index[slot / INDEX_STRIDE];
+      for (int skip = slot % INDEX_STRIDE; skip > 0; skip--) {
+        offset += 8 + map.getInt(offset + 4);
+      }
+      byte[] out = new byte[map.getInt(offset)];
+      int length = map.getInt(offset + 4);
+      Inflater inflater = new Inflater();
+      try {
+        ByteBuffer compressed = map.duplicate();
+        compressed.limit(offset + 8 + length).position(offset + 8);
+        inflater.setInput(compressed);
+        int filled = 0;
+        while (filled < out.length && !inflater.finished()) {
+          int n = inflater.inflate(out, filled, out.length - filled);
+          if (n == 0 && inflater.needsInput()) break;
+          filled += n;
+        }
+        if (filled != out.length) throw new IllegalStateException("Truncated archive record " + number + " in " + file);
+        return out;
+      } catch (DataFormatException e) {
+        throw new IllegalStateException("Corrupt archive record " + number + " in " + file + ": " + e.getMessage(), e);
+      } finally {
+        inflater.end();
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package so.fox.blockchain.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+
+final class BlockAssembler {
+  private final Mempool mempool;
+  private final AccountStore accounts;
+  private final int maxTxCount;
+  private final long maxBlockBytes;
+
+  BlockAssembler(Mempool mempool, AccountStore accounts, int maxTxCount, long maxBlockBytes) {
+    this.mempool = mempool;
+    this.accounts = accounts;
+    this.maxTxCount = maxTxCount;
+    this.maxBlockBytes = maxBlockBytes;
+  }
+
+  Template assemble(String parentHash, int height, int bits, long minTimestamp, String miner) {
+    Transaction coinbase = Transaction.coinbase(miner, 0, height);
+    long overhead = SerializationUtils.encodeBlock(new Block(parentHash, Collections.singletonList(coinbase), bits)).length;
+    Template template = new Template(parentHash, height, bits, minTimestamp, miner, new StateOverlay(accounts), maxBlockBytes - overhead);
+    template.tree.append(coinbase);
+    fill(template);
+    return template;
+  }
+
+  void fill(Template template) {
+    long version = mempool.getVersion();
+    int room = maxTxCount - template.included.size();
+    if (room > 0 && template.bytesLeft > 0) {
+      mempool.select(room, template.bytesLeft, template);
+    }
+    template.version = version;
+  }
+
+  boolean isStale(Template template) {
+    return template.version != mempool.getVersion();
+  }
+
+  Block seal(Template template, long reward) {
+    Transaction coinbase = Transaction.coinbase(template.miner, reward + template.fees, template.height);
+    template.state.working(coinbase.getRecipient()).addBalance(coinbase.getValue());
+    template.tree.set(0, coinbase);
+    List<Transaction> txs = new ArrayList<>(template.included.size() + 1);
+    txs.add(coinbase);
+    txs.addAll(template.included);
+    long timestamp = Math.max(System.currentTimeMillis(), template.minTimestamp);
+    return new Block(template.parentHash, txs, template.tree, template.bits, timestamp);
+  }
+
+  static final class Template implements Mempool.Selector {
+    final String parentHash;
+    final int height;
+    final int bits;
+    final long minTimestamp;
+    final String miner;
+    final StateOverlay state;
+    final List<Transaction> included = new ArrayList<>();
+    final List<Transaction> rejected = new ArrayList<>();
+    final MerkleTree tree = new MerkleTree();
+    long fees;
+    long bytesLeft;
+    long version;
+
+    Template(String parentHash, int height, int bits, long minTimestamp, String miner, StateOverlay state, long bytesLeft) {
+      this.parentHash = parentHash;
+      this.height = height;
+      this.bits = bits;
+      this.minTimestamp = minTimestamp;
+      this.miner = miner;
+      this.state = state;
+      this.bytesLeft = bytesLeft;
+    }
+
+    @Override
+    public long nonce(String sender) {
+      Account account = state.get(sender);
+      return account == null ? 0 : account.getNonce();
+    }
+
+    @Override
+    public boolean include(Transaction tx, int size) {
+      if (!state.transfer(tx)) return false;
+      included.add(tx);
+      tree.append(tx);
+      fees += tx.getFee();
+      bytesLeft -= size;
+      return true;
+    }
+
+    @Override
+    public void reject(Transaction tx) {
+      rejected.add(tx);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package so.fox.blockchain.core;
+
+import java.nio.charset.StandardCharsets;
+
+public class BlockHeader {
+  private final String previousHash;
+  private final String hash;
+  private final long timestamp;
+  private final int nonce;
+  private final String merkleRoot;
+  private final int bits;
+
+  public BlockHeader(String previousHash, String hash, long timestamp, int nonce, String merkleRoot) {
+    this(previousHash, hash, timestamp, nonce, merkleRoot, 0);
+  }
+
+  public BlockHeader(String previousHash, String hash, long timestamp, int nonce, String merkleRoot, int bits) {
+    this.previousHash = previousHash;
+    this.hash = hash;
+    this.timestamp = timestamp;
+    this.nonce = nonce;
+    this.merkleRoot = merkleRoot;
+    this.bits = bits;
+  }
+
+  public String calculateHash() {
+    String blockData = previousHash + timestamp + nonce + hashSuffix(merkleRoot, bits);
+    return Hash.sha256(blockData.getBytes(StandardCharsets.UTF_8)).toHex();
+  }
+
+  static String hashSuffix(String merkleRoot, int bits) {
+    return bits == 0 ? merkleRoot : merkleRoot + String.format("%08x", bits);
+  }
+
+  public String getPreviousHash() { return previousHash; }
+  public String getHash() { return hash; }
+  public long getTimestamp() { return timestamp; }
+  public int getNonce() { return nonce; }
+  public String getMerkleRoot() { return merkleRoot; }
+  public int getBits() { return bits; }
+}
@@ -0,0 +1,89 @@
+package so.fox.blockchain.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class BlockProducer {
+  private final ScheduledExecutorService executor;
+  private final Supplier<Block> mining;
+  private final Mempool mempool;
+  private final long maxBlockInterval;
+  private final int maxTxCount;
+  private final long maxBlockBytes;
+  private final Object lock = new Object();
+  private CompletableFuture<Block> next;
+  private ScheduledFuture<?> timer;
+
+  public BlockProducer(Supplier<Block> mining, Mempool mempool, long maxBlockInterval, int maxTxCount, long maxBlockBytes) {
+    this.mining = mining;
+    this.mempool = mempool;
+    this.maxBlockInterval = maxBlockInterval;
+    this.maxTxCount = maxTxCount;
+    this.maxBlockBytes = maxBlockBytes;
+    this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "block-producer");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public CompletableFuture<Block> request() {
+    synchronized (lock) {
+      if (next == null) {
+        next = new CompletableFuture<>();
+        executor.execute(this::produce);
+      }
+      return next;
+    }
+  }
+
+  public void onTransaction() {
+    if (mempool.size() >= maxTxCount || mempool.getBytes() >= maxBlockBytes) {
+      request();
+      return;
+    }
+    synchronized (lock) {
+      if (next == null && (timer == null || timer.isDone())) {
+        timer = executor.schedule(this::onTimer, maxBlockInterval, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private void onTimer() {
+    if (mempool.size() > 0) request();
+  }
+
+  private void produce() {
+    CompletableFuture<Block> current;
+    synchronized (lock) {
+      current = next;
+      next = null;
+      if (timer != null) {
+        timer.cancel(false);
+        timer = null;
+      }
+    }
+    try {
+      current.complete(mining.get());
+    } catch (Exception e) {
+      current.completeExceptionally(e);
+    }
+    if (mempool.size() > 0) onTransaction();
+  }
+
+  public void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (lock) {
+      if (next != null) next.cancel(false);
+    }
+  }
+}
@@ -0,0 +1,423 @@
+package so.fox.blockchain.core;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.asString;
+import static org.iq80.leveldb.impl.Iq80DBFactory.bytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+
+public class ChainStore {
+  private static final Logger log = LoggerFactory.getLogger(ChainStore.class);
+  private static final byte[] BLOCK_PREFIX = bytes("blk_");
+  private static final byte[] HASH_PREFIX = bytes("bhi_");
+  private static final byte[] HEADER_PREFIX = bytes("hdr_");
+  private static final byte[] TREE_PREFIX = bytes("tree_");
+  private static final byte[] SIDE_PREFIX = bytes("sbk_");
+  private static final byte[] UNDO_PREFIX = bytes("undo_");
+  private static final byte[] INVALID_PREFIX = bytes("bad_");
+  private static final byte[] TIP_KEY = bytes("meta_tip");
+  private static final byte[] TREE_KEY = bytes("meta_tree");
+  private static final byte[] BASE_KEY = bytes("meta_base");
+  private static final byte[] ARCHIVE_KEY = bytes("meta_archive");
+  private static final String LEGACY_PREFIX = "block_";
+
+  private final DB db;
+  private final Map<Integer, Block> cache;
+  private long generation;
+  private final Function<BlockHeader, BigInteger> work;
+  private final BlockArchive archive;
+  private volatile int height = -1;
+  private volatile Block latest;
+  private volatile BigInteger tipWork = BigInteger.ZERO;
+  private int base;
+
+  public ChainStore(DB db, int cacheSize, Function<BlockHeader, BigInteger> work, File archiveDir, int archiveSegment) {
+    this.db = db;
+    this.work = work;
+    this.archive = new BlockArchive(archiveDir, archiveSegment);
+    this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  public void open() throws IOException {
+    byte[] tip = db.get(TIP_KEY);
+    if (tip == null) {
+      migrateLegacyBlocks();
+      tip = db.get(TIP_KEY);
+    }
+    if (tip == null) {
+      db.put(TREE_KEY, new byte[] {1});
+    } else {
+      height = ByteBuffer.wrap(tip).getInt();
+      latest = readBlock(height);
+      byte[] value = db.get(BASE_KEY);
+      base = value == null ? 0 : ByteBuffer.wrap(value).getInt();
+      value = db.get(ARCHIVE_KEY);
+      archive.open(value == null ? -1 : ByteBuffer.wrap(value).getInt());
+      if (db.get(TREE_KEY) == null) indexTree();
+      tipWork = getNode(latest.getHash()).getWork();
+    }
+  }
+
+  public int getHeight() { return height; }
+
+  public int getBase() { return base; }
+
+  public int getArchivedHeight() { return archive.getHeight(); }
+
+  public long getArchivedBytes() { return archive.getBytes(); }
+
+  boolean hasTip() {
+    return db.get(TIP_KEY) != null;
+  }
+
+  public Block getLatestBlock() { return latest; }
+
+  public Block getBlock(int number) {
+    if (number < 0 || number > height) return null;
+    long seen;
+    synchronized (cache) {
+      Block cached = cache.get(number);
+      if (cached != null) return cached;
+      seen = generation;
+    }
+    Block block = readBlock(number);
+    if (block != null) {
+      synchronized (cache) {
+        if (generation == seen) cache.put(number, block);
+      }
+    }
+    return block;
+  }
+
+  public byte[] getBlockRecord(int number) {
+    if (number < 0 || number > height) return null;
+    byte[] value = db.get(blockKey(number));
+    return value != null ? value : archive.read(number);
+  }
+
+  public BlockHeader getHeader(int number) {
+    if (number < 0 || number > height) return null;
+    synchronized (cache) {
+      Block cached = cache.get(number);
+      if (cached != null) return cached.header();
+    }
+    byte[] value = db.get(headerKey(number));
+    if (value == null) {
+      Block block = getBlock(number);
+      return block == null ? null : block.header();
+    }
+    return decodeHeader(number, value);
+  }
+
+  BlockHeader getHeader(int number, ReadOptions options) {
+    byte[] value = db.get(headerKey(number), options);
+    if (value != null) return decodeHeader(number, value);
+    byte[] record = getBlockRecord(number, options);
+    if (record == null) return null;
+    try {
+      return SerializationUtils.decodeBlock(record).header();
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading block " + number + ": " + e.getMessage(), e);
+    }
+  }
+
+  byte[] getBlockRecord(int number, ReadOptions options) {
+    byte[] value = db.get(blockKey(number), options);
+    return value != null ? value : archive.read(number);
+  }
+
+  byte[] getUndoRecord(String hash, ReadOptions options) {
+    return db.get(hashKey(UNDO_PREFIX, hash), options);
+  }
+
+  private static BlockHeader decodeHeader(int number, byte[] value) {
+    try {
+      return SerializationUtils.decodeHeader(value);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading header " + number + ": " + e.getMessage(), e);
+    }
+  }
+
+  public int getHeight(String hash) {
+    byte[] value = db.get(concat(HASH_PREFIX, bytes(hash)));
+    return value == null ? -1 : ByteBuffer.wrap(value).getInt();
+  }
+
+  public BigInteger getWork() { return tipWork; }
+
+  public boolean contains(String hash) {
+    return db.get(hashKey(TREE_PREFIX, hash)) != null;
+  }
+
+  public TreeNode getNode(String hash) {
+    byte[] value = db.get(hashKey(TREE_PREFIX, hash));
+    return value == null ? null : TreeNode.decode(value);
+  }
+
+  public boolean isInvalid(String hash) {
+    return db.get(hashKey(INVALID_PREFIX, hash)) != null;
+  }
+
+  BigInteger work(BlockHeader header) {
+    return work.apply(header);
+  }
+
+  public TreeNode extend(BlockHeader header) {
+    BigInteger blockWork = work.apply(header);
+    if ("0".equals(header.getPreviousHash()) && height < 0) return new TreeNode(0, blockWork);
+    TreeNode parent = getNode(header.getPreviousHash());
+    return parent == null ? null : new TreeNode(parent.height + 1, parent.work.add(blockWork));
+  }
+
+  public Block getSideBlock(String hash) {
+    byte[] value = db.get(hashKey(SIDE_PREFIX, hash));
+    if (value == null) return null;
+    try {
+      return SerializationUtils.decodeBlock(value);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading side block " + hash + ": " + e.getMessage(), e);
+    }
+  }
+
+  public List<Account> getUndo(String hash) {
+    byte[] value = db.get(hashKey(UNDO_PREFIX, hash));
+    if (value == null) return null;
+    try {
+      return SerializationUtils.decodeUndo(value);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading undo record " + hash + ": " + e.getMessage(), e);
+    }
+  }
+
+  void committed(Block block, TreeNode node) {
+    synchronized (cache) {
+      cache.put(node.height, block);
+    }
+    latest = block;
+    tipWork = node.work;
+    height = node.height;
+  }
+
+  void reorganized(int fork, Block block, TreeNode node) {
+    synchronized (cache) {
+      generation++;
+      cache.keySet().removeIf(number -> number > fork);
+    }
+    committed(block, node);
+  }
+
+  void write(WriteBatch batch, Block block, TreeNode node) {
+    write(batch, node.height, block);
+    batch.put(hashKey(TREE_PREFIX, block.getHash()), node.encode());
+    batch.delete(hashKey(SIDE_PREFIX, block.getHash()));
+  }
+
+  void writeHeader(WriteBatch batch, BlockHeader header, TreeNode node) {
+    batch.put(headerKey(node.height), SerializationUtils.encodeHeader(header));
+    batch.put(concat(HASH_PREFIX, bytes(header.getHash())), ByteBuffer.allocate(4).putInt(node.height).array());
+    batch.put(hashKey(TREE_PREFIX, header.getHash()), node.encode());
+  }
+
+  void imported(WriteBatch batch, int base) {
+    batch.put(BASE_KEY, ByteBuffer.allocate(4).putInt(base).array());
+    batch.put(TREE_KEY, new byte[] {1});
+  }
+
+  void writeSide(WriteBatch batch, Block block, TreeNode node) {
+    batch.put(hashKey(SIDE_PREFIX, block.getHash()), SerializationUtils.encodeBlock(block));
+    batch.put(hashKey(TREE_PREFIX, block.getHash()), node.encode());
+  }
+
+  void invalidate(WriteBatch batch, String hash) {
+    batch.put(hashKey(INVALID_PREFIX, hash), new byte[] {1});
+    batch.delete(hashKey(SIDE_PREFIX, hash));
+  }
+
+  void writeUndo(WriteBatch batch, String hash, List<Account> undo) {
+    batch.put(hashKey(UNDO_PREFIX, hash), SerializationUtils.encodeUndo(undo));
+  }
+
+  void disconnect(WriteBatch batch, int number, Block block) {
+    batch.delete(blockKey(number));
+    batch.delete(headerKey(number));
+    batch.delete(concat(HASH_PREFIX, bytes(block.getHash())));
+    batch.put(hashKey(SIDE_PREFIX, block.getHash()), SerializationUtils.encodeBlock(block));
+  }
+
+  BlockArchive.Segment archive(int limit) throws IOException {
+    return archive.write(Math.max(base, archive.getHeight() + 1), limit, this::getBlockRecord);
+  }
+
+  boolean archived(WriteBatch batch, BlockArchive.Segment segment) throws IOException {
+    BlockHeader last = getHeader(segment.getLast());
+    Block tail = SerializationUtils.decodeBlock(segment.read(segment.getLast()));
+    if (segment.getFirst() != Math.max(base, archive.getHeight() + 1) || last == null || !last.getHash().equals(tail.getHash())) {
+      archive.discard(segment);
+      return false;
+    }
+    archive.publish(segment);
+    for (int number = segment.getFirst(); number <= segment.getLast(); number++) {
+      batch.delete(blockKey(number));
+      BlockHeader header = getHeader(number);
+      if (header != null) batch.delete(hashKey(UNDO_PREFIX, header.getHash()));
+    }
+    batch.put(ARCHIVE_KEY, ByteBuffer.allocate(4).putInt(segment.getLast()).array());
+    return true;
+  }
+
+  void truncate(WriteBatch batch, int from, Block tip) {
+    List<BlockArchive.Segment> restored = archive.truncate(from);
+    for (BlockArchive.Segment segment : restored) {
+      for (int number = segment.getFirst(); number < from; number++) {
+        batch.put(blockKey(number), segment.read(number));
+      }
+    }
+    if (!restored.isEmpty()) batch.put(ARCHIVE_KEY, ByteBuffer.allocate(4).putInt(archive.getHeight()).array());
+    for (int number = height; number >= from; number--) {
+      BlockHeader header;
+      try {
+        header = getHeader(number);
+      } catch (RuntimeException e) {
+        header = null;
+      }
+      batch.delete(blockKey(number));
+      batch.delete(headerKey(number));
+      if (header == null) continue;
+      batch.delete(concat(HASH_PREFIX, bytes(header.getHash())));
+      batch.delete(hashKey(TREE_PREFIX, header.getHash()));
+      batch.delete(hashKey(UNDO_PREFIX, header.getHash()));
+    }
+    byte[] hash = tip.getHash().getBytes(StandardCharsets.UTF_8);
+    batch.put(TIP_KEY, ByteBuffer.allocate(4 + hash.length).putInt(from - 1).put(hash).array());
+  }
+
+  private void write(WriteBatch batch, int number, Block block) {
+    batch.put(blockKey(number), SerializationUtils.encodeBlock(block));
+    batch.put(headerKey(number), SerializationUtils.encodeHeader(block.header()));
+    batch.put(concat(HASH_PREFIX, bytes(block.getHash())), ByteBuffer.allocate(4).putInt(number).array());
+    byte[] hash = block.getHash().getBytes(StandardCharsets.UTF_8);
+    batch.put(TIP_KEY, ByteBuffer.allocate(4 + hash.length).putInt(number).put(hash).array());
+  }
+
+  private Block readBlock(int number) {
+    byte[] value = db.get(blockKey(number));
+    if (value == null) value = archive.read(number);
+    if (value == null) return null;
+    try {
+      return SerializationUtils.decodeBlock(value);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading block " + number + ": " + e.getMessage(), e);
+    }
+  }
+
+  private void indexTree() {
+    BigInteger total = BigInteger.ZERO;
+    int number = 0;
+    while (number <= height) {
+      try (WriteBatch batch = db.createWriteBatch()) {
+        int end = Math.min(height, number + 1000);
+        for (; number <= end; number++) {
+          BlockHeader header = getHeader(number);
+          total = total.add(work.apply(header));
+          batch.put(hashKey(TREE_PREFIX, header.getHash()), new TreeNode(number, total).encode());
+        }
+        if (number > height) batch.put(TREE_KEY, new byte[] {1});
+        db.write(batch);
+      } catch (IOException e) {
+        throw new RuntimeException("Error indexing block tree: " + e.getMessage(), e);
+      }
+    }
+    log.info("block tree indexed blocks={} work={}", height + 1, total);
+  }
+
+  private void migrateLegacyBlocks() throws IOException {
+    List<byte[]> keys = new ArrayList<>();
+    List<Block> blocks = new ArrayList<>();
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seek(bytes(LEGACY_PREFIX));
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (!asString(entry.getKey()).startsWith(LEGACY_PREFIX)) break;
+        keys.add(entry.getKey());
+        blocks.add(SerializationUtils.decodeBlock(entry.getValue()));
+      }
+    }
+    if (blocks.isEmpty()) return;
+    blocks.sort(Comparator.comparingLong(Block::getTimestamp));
+    try (WriteBatch batch = db.createWriteBatch()) {
+      for (int i = 0; i < blocks.size(); i++) {
+        write(batch, i, blocks.get(i));
+      }
+      for (byte[] key : keys) {
+        batch.delete(key);
+      }
+      db.write(batch, new WriteOptions().sync(true));
+    }
+    log.info("blocks reindexed by height count={}", blocks.size());
+  }
+
+  static byte[] blockKey(int number) {
+    return ByteBuffer.allocate(BLOCK_PREFIX.length + 4).put(BLOCK_PREFIX).putInt(number).array();
+  }
+
+  private static byte[] headerKey(int number) {
+    return ByteBuffer.allocate(HEADER_PREFIX.length + 4).put(HEADER_PREFIX).putInt(number).array();
+  }
+
+  private static byte[] hashKey(byte[] prefix, String hash) {
+    Hash id = Hash.parse(hash);
+    return concat(prefix, id != null ? id.bytes() : bytes(hash));
+  }
+
+  static byte[] concat(byte[] a, byte[] b) {
+    byte[] out = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, out, a.length, b.length);
+    return out;
+  }
+
+  public static final class TreeNode {
+    private final int height;
+    private final BigInteger work;
+
+    TreeNode(int height, BigInteger work) {
+      this.height = height;
+      this.work = work;
+    }
+
+    public int getHeight() { return height; }
+    public BigInteger getWork() { return work; }
+
+    byte[] encode() {
+      byte[] raw = work.toByteArray();
+      return ByteBuffer.allocate(4 + raw.length).putInt(height).put(raw).array();
+    }
+
+    static TreeNode decode(byte[] value) {
+      return new TreeNode(ByteBuffer.wrap(value).getInt(), new BigInteger(Arrays.copyOfRange(value, 4, value.length)));
+    }
+  }
+}
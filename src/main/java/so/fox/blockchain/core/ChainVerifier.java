@@ -0,0 +1,217 @@
+package so.fox.blockchain.core;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.bytes;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+
+final class ChainVerifier {
+  private static final Logger log = LoggerFactory.getLogger(ChainVerifier.class);
+  private static final int FLUSH_BLOCKS = 1000;
+  private static final int FLUSH_ACCOUNTS = 100_000;
+  private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+  static final byte[] VERIFY_KEY = bytes("meta_verify");
+
+  private final Node node;
+  private final ChainStore chain;
+  private final AddressIndex addressIndex;
+  private final AccountStore accounts;
+  private final DB db;
+  private final int threads;
+
+  ChainVerifier(Node node, ChainStore chain, AddressIndex addressIndex, AccountStore accounts, DB db, int threads) {
+    this.node = node;
+    this.chain = chain;
+    this.addressIndex = addressIndex;
+    this.accounts = accounts;
+    this.db = db;
+    this.threads = threads;
+  }
+
+  int run() throws IOException {
+    int tip = chain.getHeight();
+    if (chain.getBase() > 0) {
+      log.warn("chain verification skipped base={} reason=node was bootstrapped from a snapshot", chain.getBase());
+      return tip;
+    }
+    long start = System.nanoTime();
+    db.put(VERIFY_KEY, new byte[] {1}, new WriteOptions().sync(true));
+    int cleared = accounts.clear();
+    log.info("chain verification started height={} threads={} accountsCleared={}", tip, threads, cleared);
+    AtomicInteger ids = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "chain-verify-" + ids.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    ArrayDeque<Future<Checked>> window = new ArrayDeque<>();
+    int windowSize = threads * 16;
+    StateOverlay state = new StateOverlay(accounts);
+    WriteBatch batch = db.createWriteBatch();
+    String previousHash = "0";
+    BlockHeader previous = null;
+    long txCount = 0;
+    long keyless = 0;
+    long lastReport = start;
+    int next = 0;
+    int verified = 0;
+    String error = null;
+    try {
+      while (verified <= tip && error == null) {
+        while (next <= tip && window.size() < windowSize) {
+          int number = next++;
+          window.add(pool.submit(() -> check(number)));
+        }
+        Checked checked = window.poll().get();
+        error = checked.error;
+        if (error != null) break;
+        Block block = checked.block;
+        if (!block.getPreviousHash().equals(previousHash)) {
+          error = "previous hash mismatch";
+          break;
+        }
+        if (previous != null) {
+          String header = node.checkHeader(block.header(), previous, verified - 1, height -> chain.getHeader(height).getTimestamp());
+          if (!header.isEmpty()) {
+            error = header;
+            break;
+          }
+        }
+        error = apply(verified, block, state);
+        if (error != null) break;
+        List<Account> undo = state.endBlock();
+        if (verified > chain.getArchivedHeight()) chain.writeUndo(batch, block.getHash(), undo);
+        previousHash = block.getHash();
+        previous = block.header();
+        txCount += block.getTransactions().size();
+        keyless += checked.keyless;
+        verified++;
+        if (verified % FLUSH_BLOCKS == 0 || state.changed().size() >= FLUSH_ACCOUNTS) {
+          node.flush(batch, state);
+          batch.close();
+          batch = db.createWriteBatch();
+          state = new StateOverlay(accounts);
+        }
+        long now = System.nanoTime();
+        if (now - lastReport >= PROGRESS_INTERVAL) {
+          lastReport = now;
+          double seconds = (now - start) / 1e9;
+          log.info("chain verification progress height={} of={} percent={} blocksPerSecond={} txPerSecond={}", verified - 1, tip,
+            verified * 100L / (tip + 1), Math.round(verified / seconds), Math.round(txCount / seconds));
+        }
+      }
+      node.flush(batch, state);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Chain verification interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Chain verification failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      batch.close();
+      pool.shutdownNow();
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (error == null) {
+      finish();
+      log.info("chain verified blocks={} txs={} keylessTxs={} millis={}", verified, txCount, keyless, millis);
+      return tip;
+    }
+    log.error("chain verification failed height={} reason={} millis={}", verified, error, millis);
+    if (verified == 0) throw new IllegalStateException("Genesis block is invalid: " + error);
+    truncate(verified);
+    finish();
+    return verified - 1;
+  }
+
+  private void finish() {
+    db.delete(VERIFY_KEY, new WriteOptions().sync(true));
+  }
+
+  private Checked check(int number) {
+    byte[] record = chain.getBlockRecord(number);
+    if (record == null) return new Checked(null, "missing block record", 0);
+    Block block;
+    try {
+      block = SerializationUtils.decodeBlock(record);
+    } catch (IOException | RuntimeException e) {
+      return new Checked(null, "unreadable block record: " + e.getMessage(), 0);
+    }
+    String error;
+    try {
+      error = node.checkBlock(block, true);
+    } catch (RuntimeException e) {
+      error = "malformed block: " + e.getMessage();
+    }
+    int keyless = 0;
+    for (Transaction tx : block.getTransactions()) {
+      if (!tx.isCoinbase() && tx.getPublicKey() == null) keyless++;
+    }
+    return new Checked(block, error.isEmpty() ? null : error, keyless);
+  }
+
+  private String apply(int number, Block block, StateOverlay state) {
+    List<Transaction> txs = block.getTransactions();
+    boolean legacy = number > 0 && (txs.isEmpty() || !txs.get(0).isCoinbase());
+    if (legacy) state.working(node.getNodeAddress()).addBalance(node.miningReward());
+    String error = node.apply(block, state);
+    if (!error.isEmpty()) {
+      state.restore(state.endBlock());
+      return error;
+    }
+    if (legacy) {
+      long fees = 0;
+      for (Transaction tx : txs) {
+        fees += tx.getFee();
+      }
+      state.working(node.getNodeAddress()).addBalance(fees);
+    }
+    return null;
+  }
+
+  private void truncate(int from) throws IOException {
+    Block tip = chain.getBlock(from - 1);
+    ChainStore.TreeNode tipNode = chain.getNode(tip.getHash());
+    try (WriteBatch batch = db.createWriteBatch()) {
+      for (int number = chain.getHeight(); number >= from; number--) {
+        Block block;
+        try {
+          block = chain.getBlock(number);
+        } catch (RuntimeException e) {
+          block = null;
+        }
+        if (block != null) addressIndex.erase(batch, number, block);
+      }
+      chain.truncate(batch, from, tip);
+      db.write(batch);
+    }
+    chain.reorganized(from - 1, tip, tipNode);
+    addressIndex.committed(from - 1);
+    log.warn("chain truncated to last valid block height={} hash={}", from - 1, tip.getHash());
+  }
+
+  private static final class Checked {
+    final Block block;
+    final String error;
+    final int keyless;
+
+    Checked(Block block, String error, int keyless) {
+      this.block = block;
+      this.error = error;
+      this.keyless = keyless;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package so.fox.blockchain.core;
+
+import java.math.BigInteger;
+import java.util.function.IntToLongFunction;
+
+public final class Difficulty {
+  public static final int LEGACY_ZERO_BITS = 16;
+  public static final BigInteger LEGACY_TARGET = BigInteger.ONE.shiftLeft(256 - LEGACY_ZERO_BITS).subtract(BigInteger.ONE);
+  public static final BigInteger POW_LIMIT = BigInteger.ONE.shiftLeft(256 - 8).subtract(BigInteger.ONE);
+  private static final BigInteger TWO_256 = BigInteger.ONE.shiftLeft(256);
+  private static final int MAX_ADJUSTMENT = 4;
+
+  private final int window;
+  private final long interval;
+
+  public Difficulty(int window, long interval) {
+    if (window == 1 || window < 0) throw new IllegalArgumentException("Retarget window must be 0 (disabled) or at least 2 blocks");
+    if (interval < 1) throw new IllegalArgumentException("Target block interval must be positive");
+    this.window = window;
+    this.interval = interval;
+  }
+
+  public int nextBits(int height, int parentBits, IntToLongFunction timestampAt) {
+    if (window == 0 || height < window || height % window != 0) return parentBits;
+    BigInteger parent = target(parentBits);
+    long expected = (window - 1) * interval;
+    long span = timestampAt.applyAsLong(height - 1) - timestampAt.applyAsLong(height - window);
+    span = Math.max(expected / MAX_ADJUSTMENT, Math.min(expected * MAX_ADJUSTMENT, span));
+    BigInteger next = parent.multiply(BigInteger.valueOf(span)).divide(BigInteger.valueOf(expected));
+    return encode(next.min(POW_LIMIT));
+  }
+
+  public int getWindow() { return window; }
+  public long getInterval() { return interval; }
+
+  public static BigInteger target(int bits) {
+    if (bits == 0) return LEGACY_TARGET;
+    int size = bits >>> 24;
+    BigInteger mantissa = BigInteger.valueOf(bits & 0x007fffff);
+    if ((bits & 0x00800000) != 0) return BigInteger.ZERO;
+    return size <= 3 ? mantissa.shiftRight(8 * (3 - size)) : mantissa.shiftLeft(8 * (size - 3));
+  }
+
+  public static int encode(BigInteger target) {
+    if (target.signum() <= 0) throw new IllegalArgumentException("Target must be positive");
+    int size = (target.bitLength() + 7) / 8;
+    long mantissa = size <= 3 ? target.longValue() << (8 * (3 - size)) : target.shiftRight(8 * (size - 3)).longValue();
+    if ((mantissa & 0x00800000L) != 0) {
+      mantissa >>= 8;
+      size++;
+    }
+    return (size << 24) | (int) mantissa;
+  }
+
+  public static BigInteger work(int bits) {
+    BigInteger target = target(bits);
+    return target.signum() <= 0 ? BigInteger.ZERO : TWO_256.divide(target.add(BigInteger.ONE));
+  }
+
+  public static boolean valid(int bits) {
+    BigInteger target = target(bits);
+    return target.signum() > 0 && target.compareTo(POW_LIMIT) <= 0 && (bits == 0 || encode(target) == bits);
+  }
+
+  public static byte[] targetBytes(int bits) {
+    return toBytes(target(bits));
+  }
+
+  static byte[] toBytes(BigInteger target) {
+    byte[] raw = target.toByteArray();
+    byte[] out = new byte[32];
+    int length = Math.min(raw.length, 32);
+    System.arraycopy(raw, raw.length - length, out, 32 - length, length);
+    return out;
+  }
+
+  static boolean meets(byte[] hash, byte[] target) {
+    for (int i = 0; i < 32; i++) {
+      int a = hash[i] & 0xff;
+      int b = target[i] & 0xff;
+      if (a != b) return a < b;
+    }
+    return true;
+  }
+}
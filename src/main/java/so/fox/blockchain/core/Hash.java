@@ -0,0 +1,80 @@
+package so.fox.blockchain.core;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import so.fox.blockchain.util.Hex;
+
+public final class Hash {
+  public static final int LENGTH = 32;
+
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  });
+
+  private final byte[] bytes;
+  private final int hashCode;
+  private String hex;
+
+  private Hash(byte[] bytes) {
+    this.bytes = bytes;
+    this.hashCode = (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+  }
+
+  public static Hash sha256(byte[] data) {
+    return new Hash(SHA256.get().digest(data));
+  }
+
+  public static Hash of(byte[] bytes) {
+    if (bytes.length != LENGTH) throw new IllegalArgumentException("Hash must be " + LENGTH + " bytes");
+    return new Hash(bytes.clone());
+  }
+
+  public static Hash parse(String hex) {
+    if (hex == null || hex.length() != 2 * LENGTH) return null;
+    byte[] raw = Hex.decode(hex);
+    if (raw == null) return null;
+    Hash hash = new Hash(raw);
+    hash.hex = hex;
+    return hash;
+  }
+
+  public byte[] toBytes() {
+    return bytes.clone();
+  }
+
+  byte[] bytes() {
+    return bytes;
+  }
+
+  public String toHex() {
+    String s = hex;
+    if (s == null) {
+      s = Hex.encode(bytes);
+      hex = s;
+    }
+    return s;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Hash)) return false;
+    Hash other = (Hash) o;
+    return hashCode == other.hashCode && Arrays.equals(bytes, other.bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return toHex();
+  }
+}
@@ -0,0 +1,449 @@
+package so.fox.blockchain.core;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Range;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+final class MemoryDB implements DB {
+  private static final String MEMORY_PROPERTY = "leveldb.approximate-memory-usage";
+  private static final int SLAB_BYTES = 1 << 20;
+  private static final int MAX_SLAB_VALUE = SLAB_BYTES >> 3;
+  private static final Version RETRY = new Version(Long.MAX_VALUE, null, null, null);
+
+  private final ConcurrentSkipListMap<byte[], Version> data = new ConcurrentSkipListMap<>(Arrays::compareUnsigned);
+  private final TreeMap<Long, Integer> snapshots = new TreeMap<>();
+  private final ArrayDeque<byte[]> tombstones = new ArrayDeque<>();
+  private final AtomicLong bytes = new AtomicLong();
+  private Slab slab;
+  private volatile long sequence;
+  private volatile boolean closed;
+
+  @Override
+  public byte[] get(byte[] key) {
+    return read(key, -1);
+  }
+
+  @Override
+  public byte[] get(byte[] key, ReadOptions options) {
+    return read(key, at(options));
+  }
+
+  @Override
+  public DBIterator iterator() {
+    return iterator(null);
+  }
+
+  @Override
+  public DBIterator iterator(ReadOptions options) {
+    ensureOpen();
+    long at = at(options);
+    return at < 0 ? new Cursor(pin(), true) : new Cursor(at, false);
+  }
+
+  @Override
+  public void put(byte[] key, byte[] value) {
+    put(key, value, new WriteOptions());
+  }
+
+  @Override
+  public void delete(byte[] key) {
+    delete(key, new WriteOptions());
+  }
+
+  @Override
+  public void write(WriteBatch batch) {
+    write(batch, new WriteOptions());
+  }
+
+  @Override
+  public WriteBatch createWriteBatch() {
+    return new Batch();
+  }
+
+  @Override
+  public Snapshot put(byte[] key, byte[] value, WriteOptions options) {
+    return write(new Batch().put(key, value), options);
+  }
+
+  @Override
+  public Snapshot delete(byte[] key, WriteOptions options) {
+    return write(new Batch().delete(key), options);
+  }
+
+  @Override
+  public Snapshot write(WriteBatch batch, WriteOptions options) {
+    ensureOpen();
+    if (!(batch instanceof Batch)) throw new DBException("Write batch belongs to another database");
+    List<Batch.Op> ops = ((Batch) batch).ops;
+    synchronized (this) {
+      long next = sequence + 1;
+      Version[] written = new Version[ops.size()];
+      for (int i = 0; i < written.length; i++) {
+        Batch.Op op = ops.get(i);
+        written[i] = allocate(next, op.value, data.get(op.key));
+        data.put(op.key, written[i]);
+        if (op.value == null) tombstones.add(op.key);
+      }
+      sequence = next;
+      long floor = floor(next);
+      for (Version version : written) {
+        trim(version, floor);
+      }
+      sweep(floor);
+      return options.snapshot() ? new MemorySnapshot(pin()) : null;
+    }
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    ensureOpen();
+    return new MemorySnapshot(pin());
+  }
+
+  @Override
+  public long[] getApproximateSizes(Range... ranges) {
+    long at = sequence;
+    long[] sizes = new long[ranges.length];
+    for (int i = 0; i < ranges.length; i++) {
+      for (Map.Entry<byte[], Version> entry : data.subMap(ranges[i].start(), true, ranges[i].limit(), false).entrySet()) {
+        Version version = visible(entry.getValue(), at);
+        if (version != null && version != RETRY && version.value != null) sizes[i] += entry.getKey().length + version.value.capacity();
+      }
+    }
+    return sizes;
+  }
+
+  @Override
+  public String getProperty(String name) {
+    return MEMORY_PROPERTY.equals(name) ? Long.toString(bytes.get()) : null;
+  }
+
+  @Override
+  public void suspendCompactions() {
+  }
+
+  @Override
+  public void resumeCompactions() {
+  }
+
+  @Override
+  public void compactRange(byte[] begin, byte[] end) {
+    synchronized (this) {
+      sweep(floor(sequence));
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    synchronized (this) {
+      data.clear();
+      tombstones.clear();
+      slab = null;
+      bytes.set(0);
+    }
+  }
+
+  private byte[] read(byte[] key, long at) {
+    ensureOpen();
+    while (true) {
+      Version version = visible(data.get(key), at < 0 ? sequence : at);
+      if (version == RETRY) {
+        if (at >= 0) throw new DBException("Snapshot version was released");
+        Thread.onSpinWait();
+        continue;
+      }
+      return version == null || version.value == null ? null : copy(version.value);
+    }
+  }
+
+  private static Version visible(Version version, long at) {
+    while (version != null && version.sequence > at) {
+      Version older = version.older;
+      if (older == null && version.trimmed) return RETRY;
+      version = older;
+    }
+    return version;
+  }
+
+  private void trim(Version version, long floor) {
+    Version keep = version;
+    while (keep.sequence > floor && keep.older != null) {
+      keep = keep.older;
+    }
+    Version dropped = keep.older;
+    if (dropped == null) return;
+    keep.trimmed = true;
+    keep.older = null;
+    release(dropped);
+  }
+
+  private void sweep(long floor) {
+    while (!tombstones.isEmpty()) {
+      byte[] key = tombstones.peekFirst();
+      Version head = data.get(key);
+      if (head != null && head.value == null && head.sequence > floor) return;
+      tombstones.pollFirst();
+      if (head != null && head.value == null && data.remove(key, head)) release(head.older);
+    }
+  }
+
+  private Version allocate(long sequence, byte[] value, Version older) {
+    if (value == null) return new Version(sequence, null, null, older);
+    if (value.length > MAX_SLAB_VALUE) {
+      bytes.addAndGet(value.length);
+      return new Version(sequence, ByteBuffer.allocateDirect(value.length).put(value).flip(), null, older);
+    }
+    if (slab == null || SLAB_BYTES - slab.used < value.length) {
+      if (slab != null && slab.live == 0) bytes.addAndGet(-SLAB_BYTES);
+      slab = new Slab(ByteBuffer.allocateDirect(SLAB_BYTES));
+      bytes.addAndGet(SLAB_BYTES);
+    }
+    ByteBuffer slice = slab.buffer.duplicate().position(slab.used).limit(slab.used + value.length).slice();
+    slice.put(value).flip();
+    slab.used += value.length;
+    slab.live += value.length;
+    return new Version(sequence, slice, slab, older);
+  }
+
+  private void release(Version version) {
+    for (; version != null; version = version.older) {
+      if (version.value == null || version.value.capacity() == 0) continue;
+      if (version.slab == null) {
+        bytes.addAndGet(-version.value.capacity());
+      } else if ((version.slab.live -= version.value.capacity()) == 0 && version.slab != slab) {
+        bytes.addAndGet(-SLAB_BYTES);
+      }
+    }
+  }
+
+  private long floor(long next) {
+    return snapshots.isEmpty() ? next : Math.min(next, snapshots.firstKey());
+  }
+
+  private synchronized long pin() {
+    long at = sequence;
+    snapshots.merge(at, 1, Integer::sum);
+    return at;
+  }
+
+  private synchronized void unpin(long at) {
+    if (snapshots.merge(at, -1, Integer::sum) == 0) snapshots.remove(at);
+    sweep(floor(sequence));
+  }
+
+  private long at(ReadOptions options) {
+    Snapshot snapshot = options == null ? null : options.snapshot();
+    if (snapshot == null) return -1;
+    if (!(snapshot instanceof MemorySnapshot) || ((MemorySnapshot) snapshot).owner() != this) {
+      throw new DBException("Snapshot belongs to another database");
+    }
+    return ((MemorySnapshot) snapshot).at;
+  }
+
+  private void ensureOpen() {
+    if (closed) throw new DBException("Database is closed");
+  }
+
+  private static byte[] copy(ByteBuffer value) {
+    byte[] out = new byte[value.capacity()];
+    value.duplicate().clear().get(out);
+    return out;
+  }
+
+  private static final class Version {
+    final long sequence;
+    final ByteBuffer value;
+    final Slab slab;
+    volatile Version older;
+    volatile boolean trimmed;
+
+    Version(long sequence, ByteBuffer value, Slab slab, Version older) {
+      this.sequence = sequence;
+      this.value = value;
+      this.slab = slab;
+      this.older = older;
+    }
+  }
+
+  private static final class Slab {
+    final ByteBuffer buffer;
+    int used;
+    int live;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+
+  private static final class Batch implements WriteBatch {
+    private final List<Op> ops = new ArrayList<>();
+
+    @Override
+    public WriteBatch put(byte[] key, byte[] value) {
+      ops.add(new Op(key.clone(), value.clone()));
+      return this;
+    }
+
+    @Override
+    public WriteBatch delete(byte[] key) {
+      ops.add(new Op(key.clone(), null));
+      return this;
+    }
+
+    @Override
+    public void close() {
+      ops.clear();
+    }
+
+    private static final class Op {
+      final byte[] key;
+      final byte[] value;
+
+      Op(byte[] key, byte[] value) {
+        this.key = key;
+        this.value = value;
+      }
+    }
+  }
+
+  private final class MemorySnapshot implements Snapshot {
+    final long at;
+    private boolean released;
+
+    MemorySnapshot(long at) {
+      this.at = at;
+    }
+
+    MemoryDB owner() { return MemoryDB.this; }
+
+    @Override
+    public void close() {
+      synchronized (MemoryDB.this) {
+        if (released) return;
+        released = true;
+        unpin(at);
+      }
+    }
+  }
+
+  private final class Cursor implements DBIterator {
+    private final long at;
+    private final boolean pinned;
+    private byte[] position;
+    private boolean inclusive = true;
+    private Map.Entry<byte[], byte[]> next;
+    private boolean closed;
+
+    Cursor(long at, boolean pinned) {
+      this.at = at;
+      this.pinned = pinned;
+    }
+
+    @Override
+    public void seek(byte[] key) {
+      moveTo(key.clone(), true);
+    }
+
+    @Override
+    public void seekToFirst() {
+      moveTo(null, true);
+    }
+
+    @Override
+    public void seekToLast() {
+      Map.Entry<byte[], byte[]> last = find(data.descendingMap());
+      if (last == null) moveTo(null, true);
+      else moveTo(last.getKey(), true);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return peekNextOrNull() != null;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+      Map.Entry<byte[], byte[]> entry = peekNext();
+      moveTo(entry.getKey(), false);
+      return entry;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> peekNext() {
+      Map.Entry<byte[], byte[]> entry = peekNextOrNull();
+      if (entry == null) throw new NoSuchElementException();
+      return entry;
+    }
+
+    @Override
+    public boolean hasPrev() {
+      return peekPrevOrNull() != null;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> prev() {
+      Map.Entry<byte[], byte[]> entry = peekPrev();
+      moveTo(entry.getKey(), true);
+      return entry;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> peekPrev() {
+      Map.Entry<byte[], byte[]> entry = peekPrevOrNull();
+      if (entry == null) throw new NoSuchElementException();
+      return entry;
+    }
+
+    @Override
+    public void close() {
+      if (closed) return;
+      closed = true;
+      if (pinned) unpin(at);
+    }
+
+    private void moveTo(byte[] key, boolean inclusive) {
+      this.position = key;
+      this.inclusive = inclusive;
+      this.next = null;
+    }
+
+    private Map.Entry<byte[], byte[]> peekNextOrNull() {
+      if (next == null) next = find(position == null ? data : data.tailMap(position, inclusive));
+      return next;
+    }
+
+    private Map.Entry<byte[], byte[]> peekPrevOrNull() {
+      if (position == null) return null;
+      return find(data.headMap(position, !inclusive).descendingMap());
+    }
+
+    private Map.Entry<byte[], byte[]> find(NavigableMap<byte[], Version> range) {
+      if (closed) throw new DBException("Iterator is closed");
+      for (Map.Entry<byte[], Version> entry : range.entrySet()) {
+        Version version = visible(entry.getValue(), at);
+        if (version != null && version != RETRY && version.value != null) {
+          return new AbstractMap.SimpleImmutableEntry<>(entry.getKey().clone(), copy(version.value));
+        }
+      }
+      return null;
+    }
+  }
+}
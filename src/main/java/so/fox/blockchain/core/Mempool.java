@@ -0,0 +1,256 @@
+package so.fox.blockchain.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import so.fox.blockchain.util.SerializationUtils;
+
+public class Mempool {
+  private static final Comparator<Entry> BY_FEE_RATE = Comparator
+    .comparingDouble((Entry e) -> -e.feeRate)
+    .thenComparingLong(e -> e.seq);
+
+  private final int capacity;
+  private final Map<Hash, Entry> byHash = new ConcurrentHashMap<>();
+  private final Map<String, SenderQueue> bySender = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListSet<Entry> byFeeRate = new ConcurrentSkipListSet<>(BY_FEE_RATE);
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicInteger seq = new AtomicInteger();
+  private final AtomicLong version = new AtomicLong();
+
+  public Mempool(int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("Mempool capacity must be positive");
+    this.capacity = capacity;
+  }
+
+  public String add(Transaction tx, long accountNonce, long balance) {
+    Entry entry = new Entry(tx, seq.incrementAndGet());
+    if (byHash.containsKey(entry.hash)) return "Транзакция уже в пуле";
+    if (size.get() >= capacity) {
+      Entry lowest = lowest();
+      if (lowest != null && lowest.feeRate >= entry.feeRate) return "Пул транзакций переполнен";
+    }
+    String error = null;
+    while (error == null) {
+      SenderQueue queue = bySender.computeIfAbsent(tx.getSender(), k -> new SenderQueue());
+      synchronized (queue) {
+        if (queue.removed) continue;
+        error = insert(queue, entry, accountNonce, balance);
+      }
+    }
+    if (!error.isEmpty()) return error;
+    while (size.get() > capacity) {
+      Entry lowest = lowest();
+      if (lowest == null) break;
+      evict(lowest);
+    }
+    return byHash.containsKey(entry.hash) ? "" : "Пул транзакций переполнен";
+  }
+
+  private String insert(SenderQueue queue, Entry entry, long accountNonce, long balance) {
+    Transaction tx = entry.tx;
+    long expected = queue.txs.isEmpty() ? accountNonce : queue.txs.lastKey() + 1;
+    if (tx.getNonce() != expected) return "Некорректный nonce";
+    long available = balance - queue.spent;
+    if (tx.getFee() > available || tx.getValue() > available - tx.getFee()) return "Недостаточно средств с учётом комиссии";
+    if (byHash.putIfAbsent(entry.hash, entry) != null) return "Транзакция уже в пуле";
+    queue.txs.put(tx.getNonce(), entry);
+    queue.spent += tx.getValue() + tx.getFee();
+    byFeeRate.add(entry);
+    size.incrementAndGet();
+    bytes.addAndGet(entry.size);
+    version.incrementAndGet();
+    return "";
+  }
+
+  public Transaction get(String hash) {
+    Hash id = Hash.parse(hash);
+    Entry entry = id == null ? null : byHash.get(id);
+    return entry == null ? null : entry.tx;
+  }
+
+  public boolean contains(Hash hash) {
+    return byHash.containsKey(hash);
+  }
+
+  public int size() {
+    return size.get();
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  public long getVersion() {
+    return version.get();
+  }
+
+  public long pendingNonce(String sender, long accountNonce) {
+    SenderQueue queue = bySender.get(sender);
+    if (queue == null) return accountNonce;
+    synchronized (queue) {
+      return queue.txs.isEmpty() ? accountNonce : queue.txs.lastKey() + 1;
+    }
+  }
+
+  public List<Transaction> select(int maxCount) {
+    return select(maxCount, Long.MAX_VALUE, new Selector() {
+      @Override
+      public long nonce(String sender) { return Long.MIN_VALUE; }
+
+      @Override
+      public boolean include(Transaction tx, int size) { return true; }
+
+      @Override
+      public void reject(Transaction tx) {
+      }
+    });
+  }
+
+  public List<Transaction> select(int maxCount, long maxBytes, Selector selector) {
+    List<Transaction> result = new ArrayList<>();
+    PriorityQueue<Entry> heads = new PriorityQueue<>(BY_FEE_RATE);
+    Map<String, List<Entry>> chains = new HashMap<>();
+    for (Map.Entry<String, SenderQueue> e : bySender.entrySet()) {
+      SenderQueue queue = e.getValue();
+      long from = selector.nonce(e.getKey());
+      List<Entry> chain;
+      synchronized (queue) {
+        chain = new ArrayList<>(queue.txs.tailMap(from, true).values());
+      }
+      if (chain.isEmpty()) continue;
+      chains.put(e.getKey(), chain);
+      heads.add(chain.get(0));
+    }
+    Map<String, Integer> cursor = new HashMap<>();
+    long used = 0;
+    while (!heads.isEmpty() && result.size() < maxCount) {
+      Entry best = heads.poll();
+      String sender = best.tx.getSender();
+      List<Entry> chain = chains.get(sender);
+      if (used + best.size > maxBytes) continue;
+      if (!selector.include(best.tx, best.size)) {
+        for (int i = cursor.getOrDefault(sender, 0); i < chain.size(); i++) {
+          selector.reject(chain.get(i).tx);
+        }
+        continue;
+      }
+      result.add(best.tx);
+      used += best.size;
+      int next = cursor.merge(sender, 1, Integer::sum);
+      if (next < chain.size()) heads.add(chain.get(next));
+    }
+    return result;
+  }
+
+  public List<Transaction> snapshot() {
+    List<Transaction> result = new ArrayList<>(size.get());
+    for (Entry entry : byFeeRate) {
+      result.add(entry.tx);
+    }
+    return result;
+  }
+
+  public List<Transaction> drain() {
+    List<Transaction> drained = new ArrayList<>(size.get());
+    for (Entry entry : byHash.values()) {
+      remove(entry);
+      drained.add(entry.tx);
+    }
+    return drained;
+  }
+
+  public void removeConfirmed(Collection<Transaction> txs, Map<String, Long> accountNonces) {
+    for (Transaction tx : txs) {
+      Entry entry = byHash.get(tx.id());
+      if (entry != null) remove(entry);
+    }
+    for (Map.Entry<String, Long> e : accountNonces.entrySet()) {
+      SenderQueue queue = bySender.get(e.getKey());
+      if (queue == null) continue;
+      List<Entry> stale;
+      synchronized (queue) {
+        stale = new ArrayList<>(queue.txs.headMap(e.getValue()).values());
+      }
+      for (Entry entry : stale) remove(entry);
+    }
+  }
+
+  private Entry lowest() {
+    try {
+      return byFeeRate.last();
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+
+  private void evict(Entry entry) {
+    SenderQueue queue = bySender.get(entry.tx.getSender());
+    if (queue == null) return;
+    List<Entry> dropped;
+    synchronized (queue) {
+      dropped = new ArrayList<>(queue.txs.tailMap(entry.tx.getNonce(), true).values());
+    }
+    for (Entry e : dropped) remove(e);
+  }
+
+  private void remove(Entry entry) {
+    SenderQueue queue = bySender.get(entry.tx.getSender());
+    if (queue == null) return;
+    synchronized (queue) {
+      if (queue.txs.get(entry.tx.getNonce()) != entry) return;
+      queue.txs.remove(entry.tx.getNonce());
+      queue.spent -= entry.tx.getValue() + entry.tx.getFee();
+      byHash.remove(entry.hash);
+      byFeeRate.remove(entry);
+      size.decrementAndGet();
+      bytes.addAndGet(-entry.size);
+      version.incrementAndGet();
+      if (queue.txs.isEmpty()) {
+        queue.removed = true;
+        bySender.remove(entry.tx.getSender(), queue);
+      }
+    }
+  }
+
+  public interface Selector {
+    long nonce(String sender);
+
+    boolean include(Transaction tx, int size);
+
+    void reject(Transaction tx);
+  }
+
+  private static final class SenderQueue {
+    final TreeMap<Long, Entry> txs = new TreeMap<>();
+    long spent;
+    boolean removed;
+  }
+
+  private static final class Entry {
+    final Transaction tx;
+    final Hash hash;
+    final int size;
+    final double feeRate;
+    final long seq;
+
+    Entry(Transaction tx, long seq) {
+      this.tx = tx;
+      this.hash = tx.id();
+      this.size = SerializationUtils.encodeTransaction(tx).length;
+      this.feeRate = (double) tx.getFee() / size;
+      this.seq = seq;
+    }
+  }
+}
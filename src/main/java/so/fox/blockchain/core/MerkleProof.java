@@ -0,0 +1,45 @@
+package so.fox.blockchain.core;
+
+import java.util.List;
+
+public class MerkleProof {
+  private final String txHash;
+  private final int index;
+  private final String merkleRoot;
+  private final List<Step> path;
+  private String blockHash;
+  private int height = -1;
+
+  public MerkleProof(String txHash, int index, String merkleRoot, List<Step> path) {
+    this.txHash = txHash;
+    this.index = index;
+    this.merkleRoot = merkleRoot;
+    this.path = path;
+  }
+
+  MerkleProof inBlock(String blockHash, int height) {
+    this.blockHash = blockHash;
+    this.height = height;
+    return this;
+  }
+
+  public String getTxHash() { return txHash; }
+  public int getIndex() { return index; }
+  public String getMerkleRoot() { return merkleRoot; }
+  public List<Step> getPath() { return path; }
+  public String getBlockHash() { return blockHash; }
+  public int getHeight() { return height; }
+
+  public static class Step {
+    private final String hash;
+    private final String position;
+
+    public Step(String hash, String position) {
+      this.hash = hash;
+      this.position = position;
+    }
+
+    public String getHash() { return hash; }
+    public String getPosition() { return position; }
+  }
+}
@@ -0,0 +1,112 @@
+package so.fox.blockchain.core;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import so.fox.blockchain.util.Hex;
+
+public class MerkleTree {
+  private final List<List<byte[]>> levels = new ArrayList<>();
+  private final MessageDigest digest;
+  private final byte[] pair = new byte[128];
+
+  public MerkleTree() {
+    try {
+      this.digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    levels.add(new ArrayList<>());
+  }
+
+  public static MerkleTree of(List<Transaction> transactions) {
+    MerkleTree tree = new MerkleTree();
+    for (Transaction tx : transactions) {
+      tree.append(tx);
+    }
+    return tree;
+  }
+
+  public synchronized void append(Transaction tx) {
+    append(tx.id().bytes());
+  }
+
+  public synchronized void append(byte[] leaf) {
+    List<byte[]> leaves = levels.get(0);
+    leaves.add(leaf);
+    int index = leaves.size() - 1;
+    for (int l = 0; levels.get(l).size() > 1; l++) {
+      List<byte[]> level = levels.get(l);
+      int parent = index / 2;
+      byte[] left = level.get(2 * parent);
+      byte[] right = 2 * parent + 1 < level.size() ? level.get(2 * parent + 1) : left;
+      if (levels.size() == l + 1) levels.add(new ArrayList<>());
+      List<byte[]> up = levels.get(l + 1);
+      byte[] hash = hashPair(left, right);
+      if (parent < up.size()) up.set(parent, hash);
+      else up.add(hash);
+      index = parent;
+    }
+  }
+
+  public synchronized void set(int index, Transaction tx) {
+    List<byte[]> leaves = levels.get(0);
+    leaves.set(index, tx.id().bytes());
+    for (int l = 0; l < levels.size() - 1; l++) {
+      List<byte[]> level = levels.get(l);
+      int parent = index / 2;
+      byte[] left = level.get(2 * parent);
+      byte[] right = 2 * parent + 1 < level.size() ? level.get(2 * parent + 1) : left;
+      levels.get(l + 1).set(parent, hashPair(left, right));
+      index = parent;
+    }
+  }
+
+  public synchronized int size() {
+    return levels.get(0).size();
+  }
+
+  public synchronized String getRoot() {
+    if (levels.get(0).isEmpty()) return "0";
+    return Hex.encode(levels.get(levels.size() - 1).get(0));
+  }
+
+  public synchronized MerkleProof proof(int index) {
+    List<byte[]> leaves = levels.get(0);
+    if (index < 0 || index >= leaves.size()) return null;
+    List<MerkleProof.Step> steps = new ArrayList<>();
+    int i = index;
+    for (int l = 0; l < levels.size() - 1; l++) {
+      List<byte[]> level = levels.get(l);
+      boolean right = (i & 1) == 0;
+      int sibling = right ? Math.min(i + 1, level.size() - 1) : i - 1;
+      steps.add(new MerkleProof.Step(Hex.encode(level.get(sibling)), right ? "right" : "left"));
+      i /= 2;
+    }
+    return new MerkleProof(Hex.encode(leaves.get(index)), index, getRoot(), steps);
+  }
+
+  public static boolean verify(MerkleProof proof) {
+    MerkleTree scratch = new MerkleTree();
+    byte[] hash = parseHex(proof.getTxHash());
+    if (hash == null) return false;
+    for (MerkleProof.Step step : proof.getPath()) {
+      byte[] sibling = parseHex(step.getHash());
+      if (sibling == null) return false;
+      hash = "right".equals(step.getPosition()) ? scratch.hashPair(hash, sibling) : scratch.hashPair(sibling, hash);
+    }
+    return Hex.encode(hash).equals(proof.getMerkleRoot());
+  }
+
+  private byte[] hashPair(byte[] left, byte[] right) {
+    Hex.encode(left, pair, 0);
+    Hex.encode(right, pair, 64);
+    return digest.digest(pair);
+  }
+
+  private static byte[] parseHex(String hex) {
+    Hash hash = Hash.parse(hex);
+    return hash == null ? null : hash.bytes();
+  }
+}
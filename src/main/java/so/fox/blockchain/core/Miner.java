@@ -0,0 +1,146 @@
+package so.fox.blockchain.core;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Miner {
+  private static final int CHECK_INTERVAL = 1024;
+
+  private final int threads;
+  private final ExecutorService workers;
+  private final AtomicReference<Job> current = new AtomicReference<>();
+  private final LongAdder totalHashes = new LongAdder();
+  private volatile double hashRate;
+
+  public Miner(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Miner needs at least one thread");
+    }
+    this.threads = threads;
+    AtomicInteger counter = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "miner-" + counter.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public boolean mine(Block block) {
+    return mine(block, Difficulty.targetBytes(block.getBits()));
+  }
+
+  public boolean mine(Block block, int difficulty) {
+    return mine(block, Difficulty.toBytes(BigInteger.ONE.shiftLeft(256 - difficulty * 4).subtract(BigInteger.ONE)));
+  }
+
+  private boolean mine(Block block, byte[] target) {
+    Job job = new Job(block.headerPrefix(), block.headerSuffix(), target);
+    current.set(job);
+    long start = System.nanoTime();
+    CountDownLatch done = new CountDownLatch(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        final int first = i;
+        workers.execute(() -> {
+          try {
+            search(job, first);
+          } finally {
+            done.countDown();
+          }
+        });
+      }
+      done.await();
+    } catch (InterruptedException e) {
+      job.cancelled = true;
+      Thread.currentThread().interrupt();
+    } finally {
+      current.compareAndSet(job, null);
+    }
+    double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+    if (seconds > 0) hashRate = job.hashes.sum() / seconds;
+    int solution = job.solution.get();
+    if (job.cancelled || solution < 0) return false;
+    block.applyNonce(solution);
+    return true;
+  }
+
+  public void cancel() {
+    Job job = current.get();
+    if (job != null) job.cancelled = true;
+  }
+
+  public double getHashRate() { return hashRate; }
+  public long getTotalHashes() { return totalHashes.sum(); }
+  public int getThreads() { return threads; }
+
+  public void close() {
+    cancel();
+    workers.shutdownNow();
+  }
+
+  private void search(Job job, int first) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    byte[] out = new byte[32];
+    byte[] digits = new byte[10];
+    long done = 0;
+    for (int nonce = first; nonce >= 0; nonce += threads) {
+      int len = writeDigits(nonce, digits);
+      digest.update(job.prefix);
+      digest.update(digits, digits.length - len, len);
+      digest.update(job.suffix);
+      try {
+        digest.digest(out, 0, out.length);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      done++;
+      if (Difficulty.meets(out, job.target)) {
+        job.solution.compareAndSet(-1, nonce);
+        break;
+      }
+      if (done % CHECK_INTERVAL == 0) {
+        job.hashes.add(CHECK_INTERVAL);
+        totalHashes.add(CHECK_INTERVAL);
+        if (job.cancelled || job.solution.get() >= 0) break;
+      }
+    }
+    job.hashes.add(done % CHECK_INTERVAL);
+    totalHashes.add(done % CHECK_INTERVAL);
+  }
+
+  private static int writeDigits(int value, byte[] buf) {
+    int pos = buf.length;
+    do {
+      buf[--pos] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    return buf.length - pos;
+  }
+
+  private static final class Job {
+    final byte[] prefix;
+    final byte[] suffix;
+    final byte[] target;
+    final AtomicInteger solution = new AtomicInteger(-1);
+    final LongAdder hashes = new LongAdder();
+    volatile boolean cancelled;
+
+    Job(byte[] prefix, byte[] suffix, byte[] target) {
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.target = target;
+    }
+  }
+}
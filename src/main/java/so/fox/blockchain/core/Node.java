@@ -8,55 +8,102 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.math.BigInteger;
 import java.security.KeyFactory;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntToLongFunction;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import so.fox.blockchain.net.PeerNetwork;
 import so.fox.blockchain.util.SerializationUtils;
 import so.fox.blockchain.wallet.Account;
 import so.fox.blockchain.wallet.Wallet;
 
 public class Node {
-  private final List<Block> blockchain;
-  private final List<Transaction> pendingTransactions;
-  private final Map<String, Account> accounts;
+  private static final Logger log = LoggerFactory.getLogger(Node.class);
+  private static final long GENESIS_TIMESTAMP = 1735689600000L;
+  private static final int GENESIS_DIFFICULTY = 4;
+  private static final long MAX_FUTURE_DRIFT = 2 * 60 * 60 * 1000L;
+  private static final int MEDIAN_TIME_SPAN = 11;
+  private static final byte[] IMPORT_KEY = bytes("meta_import");
+  private static final int SNAPSHOT_RETAIN = 2;
+  private static final int STREAM_CHUNK = 1024;
+
+  private final ChainStore chain;
+  private final AddressIndex addressIndex;
+  private final Mempool mempool;
+  private final TransactionPipeline pipeline;
+  private final BlockProducer producer;
+  private final AccountStore accounts;
+  private final StateHistory history;
   private final DB db;
+  private final WriteOptions writeOptions;
   private final Wallet nodeWallet;
   private final int port;
-  private final int difficulty = 4;
+  private final Miner miner;
+  private final NodeMetrics metrics;
+  private final PeerNetwork network;
+  private final StateSnapshot snapshots;
+  private final File snapshotDir;
+  private final int snapshotInterval;
+  private final int snapshotBlocks;
+  private final ExecutorService snapshotWriter;
+  private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+  private final int archiveDepth;
+  private final int archiveSegment;
+  private final ExecutorService archiver;
+  private final AtomicBoolean archiveRunning = new AtomicBoolean();
+  private volatile int finalized = -1;
+  private final BlockAssembler assembler;
+  private final ExecutorService templateBuilder;
+  private final AtomicBoolean templateRunning = new AtomicBoolean();
+  private BlockAssembler.Template template;
+  private volatile boolean producing;
+  private final Object miningLock = new Object();
+  private final Object admissionLock = new Object();
+  private final ReentrantLock tipLock = new ReentrantLock();
+  private final Condition tipMoved = tipLock.newCondition();
+  private final Difficulty difficulty;
   private final long miningReward = 10 * UNITS_PER_MAIN_UNIT;
 
   public Node(int port) {
+    this(port, new NodeOptions());
+  }
+
+  public Node(int port, NodeOptions options) {
     this.port = port;
     String thisDir = "blockchaindb_" + port;
-    this.blockchain = new CopyOnWriteArrayList<>();
-    this.pendingTransactions = new CopyOnWriteArrayList<>();
-    this.accounts = new HashMap<>();
+    this.metrics = new NodeMetrics(options.meterRegistry());
+    Timer.Sample startup = metrics.start();
+    this.mempool = new Mempool(options.mempoolCapacity());
+    this.pipeline = new TransactionPipeline(mempool, this::admit, metrics, options.verifyThreads(), options.verifyQueue(), options.keyCacheSize());
+    this.miner = new Miner(options.minerThreads());
+    this.difficulty = new Difficulty(options.retargetWindow(), options.targetInterval());
+    this.writeOptions = new WriteOptions().sync(options.syncWrites());
+    DB opened = null;
     try {
-      String classPath = System.getProperty("java.class.path");
-      if (classPath == null || classPath.isEmpty()) {
-        classPath = System.getProperty("user.dir");
-        if (classPath == null || classPath.isEmpty()) {
-          throw new RuntimeException("Не удалось определить путь: java.class.path и user.dir пусты");
-        }
-      }
-      String[] paths = classPath.split(File.pathSeparator);
-      File jarDir;
-      File firstPath = new File(paths[0]).getAbsoluteFile();
-      if (firstPath.isFile() && paths[0].endsWith(".jar")) jarDir = firstPath.getParentFile();
-      else jarDir = new File(System.getProperty("user.dir")).getAbsoluteFile();
-      if (jarDir == null || !jarDir.exists()) {
-        throw new RuntimeException("Родительская директория не существует: " + firstPath.getAbsolutePath());
-      }
-      File newFolder = new File(jarDir, thisDir);
+      File newFolder = options.dataDir() != null ? options.dataDir() : defaultDataDir(thisDir);
       if (!newFolder.exists()) {
         boolean created = newFolder.mkdirs();
         if (!created) {
@@ -74,18 +121,96 @@ public class Node {
       }
       this.nodeWallet = wallet;
       
-      Options options = new Options();
-      options.createIfMissing(true);
-      this.db = factory.open(newFolder, options);
-      loadState();
+      Options dbOptions = new Options();
+      dbOptions.createIfMissing(true);
+      opened = options.storageEngine().open(newFolder, dbOptions);
+      this.db = opened;
+      log.info("storage opened engine={}", options.storageEngine().getId());
+      File archiveDir = options.archiveDir() != null ? options.archiveDir() : new File(newFolder, "archive");
+      this.chain = new ChainStore(db, options.blockCacheSize(), this::blockWork, archiveDir, options.archiveSegment());
+      this.addressIndex = new AddressIndex(db);
+      this.accounts = new AccountStore(db, options.accountCacheSize());
+      this.history = new StateHistory(accounts, options.stateHistory());
+      this.snapshots = new StateSnapshot(this, chain, addressIndex, accounts, db);
+      this.snapshotDir = options.snapshotDir() != null ? options.snapshotDir() : new File(newFolder, "snapshots");
+      if (options.snapshotImport() != null) importSnapshot(options.snapshotImport());
+      else if (db.get(IMPORT_KEY) != null) throw new IllegalStateException("Snapshot import was interrupted, restart it with --snapshot-import");
+      migrateLegacyRecords();
+      chain.open();
+      addressIndex.open(chain);
+      log.info("chain loaded height={} dir={}", chain.getHeight(), newFolder.getAbsolutePath());
+      if (options.verifyChain() && chain.getHeight() >= 0) {
+        new ChainVerifier(this, chain, addressIndex, accounts, db, options.verifyThreads()).run();
+      } else if (db.get(ChainVerifier.VERIFY_KEY) != null) {
+        throw new IllegalStateException("Chain verification was interrupted, restart it with --verify-chain");
+      }
+      if (chain.getHeight() >= 0) history.reset(chain.getHeight(), chain.getLatestBlock().getHash());
     } catch (IOException e) {
+      abort(opened);
       throw new RuntimeException("Error initializing LevelDB: " + e.getMessage(), e);
     } catch (Exception e) {
+      abort(opened);
       throw new RuntimeException("Error initializing Node: " + e.getMessage(), e);
     }
-    if (blockchain.isEmpty()) {
+    if (chain.getHeight() < 0) {
       createGenesisBlock();
     }
+    this.snapshotInterval = options.snapshotInterval();
+    this.snapshotBlocks = options.snapshotBlocks();
+    this.snapshotWriter = snapshotInterval > 0 ? Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "snapshot-writer");
+      t.setDaemon(true);
+      return t;
+    }) : null;
+    this.archiveDepth = options.archiveDepth();
+    this.archiveSegment = options.archiveSegment();
+    this.archiver = archiveDepth > 0 ? Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "block-archiver");
+      t.setDaemon(true);
+      return t;
+    }) : null;
+    if (archiver != null) advanceFinalized(chain.getHeight());
+    this.assembler = new BlockAssembler(mempool, accounts, options.maxBlockTxCount(), options.maxBlockBytes());
+    this.templateBuilder = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "block-template");
+      t.setDaemon(true);
+      return t;
+    });
+    this.producer = new BlockProducer(this::mineBlock, mempool, options.maxBlockInterval(), options.maxBlockTxCount(), options.maxBlockBytes());
+    this.network = options.p2pPort() > 0 ? new PeerNetwork(this, options.p2pPort(), options.peers()) : null;
+    if (network != null) network.start();
+    metrics.started(startup);
+    metrics.bind(this);
+  }
+
+  private void abort(DB opened) {
+    pipeline.close();
+    miner.close();
+    if (opened == null) return;
+    try {
+      opened.close();
+    } catch (IOException e) {
+      log.error("Error closing LevelDB", e);
+    }
+  }
+
+  private static File defaultDataDir(String thisDir) {
+    String classPath = System.getProperty("java.class.path");
+    if (classPath == null || classPath.isEmpty()) {
+      classPath = System.getProperty("user.dir");
+      if (classPath == null || classPath.isEmpty()) {
+        throw new RuntimeException("Не удалось определить путь: java.class.path и user.dir пусты");
+      }
+    }
+    String[] paths = classPath.split(File.pathSeparator);
+    File jarDir;
+    File firstPath = new File(paths[0]).getAbsoluteFile();
+    if (firstPath.isFile() && paths[0].endsWith(".jar")) jarDir = firstPath.getParentFile();
+    else jarDir = new File(System.getProperty("user.dir")).getAbsoluteFile();
+    if (jarDir == null || !jarDir.exists()) {
+      throw new RuntimeException("Родительская директория не существует: " + firstPath.getAbsolutePath());
+    }
+    return new File(jarDir, thisDir);
   }
 
   private void saveWallet(String filePath, Wallet wallet) {
@@ -116,146 +241,743 @@ public class Node {
   }
 
   private void createGenesisBlock() {
-    Block genesis = new Block("0", new ArrayList<>());
-    genesis.mineBlock(difficulty);
-    blockchain.add(genesis);
-    saveBlock(genesis);
+    commitBlock(Block.genesis(GENESIS_TIMESTAMP, GENESIS_DIFFICULTY), new StateOverlay(accounts));
   }
 
   public String addTransaction(Transaction tx, PublicKey senderKey) {
+    String result = check(withKey(tx, senderKey), senderKey);
+    metrics.admission(result);
+    return result;
+  }
+
+  private String check(Transaction tx, PublicKey senderKey) {
     if (tx == null || senderKey == null) return "Отсутствует поле";
     if (!tx.getSender().equals(Wallet.getAddressFromPublicKey(senderKey))) return "Некорректный адрес";
-    if (!tx.verify(senderKey)) return "Подпись неверна";
-    Account sender = getOrCreateAccount(tx.getSender());
-    getOrCreateAccount(tx.getRecipient());
-    if (tx.getNonce() != sender.getNonce()) return "Некорректный nonce";
+    Timer.Sample sample = metrics.start();
+    boolean valid = tx.verify(senderKey);
+    metrics.verified(sample);
+    if (!valid) return "Подпись неверна";
+    return admit(tx);
+  }
+
+  public CompletableFuture<String> submitTransaction(Transaction tx, PublicKey senderKey) {
+    CompletableFuture<String> result = pipeline.submit(withKey(tx, senderKey), senderKey);
+    result.whenComplete((r, error) -> metrics.admission(r != null ? r : reason(error)));
+    return result;
+  }
+
+  public CompletableFuture<List<String>> submitTransactions(List<Transaction> txs, List<PublicKey> senderKeys) {
+    List<Transaction> keyed = new ArrayList<>(txs.size());
+    for (int i = 0; i < txs.size(); i++) {
+      keyed.add(withKey(txs.get(i), senderKeys.get(i)));
+    }
+    CompletableFuture<List<String>> result = pipeline.submitAll(keyed, senderKeys);
+    result.thenAccept(results -> results.forEach(metrics::admission));
+    return result;
+  }
+
+  private static Transaction withKey(Transaction tx, PublicKey senderKey) {
+    if (tx == null || senderKey == null || tx.getPublicKey() != null) return tx;
+    return tx.withPublicKey(Base64.getEncoder().encodeToString(senderKey.getEncoded()));
+  }
+
+  private static String reason(Throwable error) {
+    return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+  }
+
+  private String admit(Transaction tx) {
     if (tx.getSender().equalsIgnoreCase(tx.getRecipient())) return "Нельзя переводить себе";
-    //System.out.println("s: " + sender.getBalance() + " need: " + (tx.getValue() + tx.getFee()));
-    if (sender.getBalance() < tx.getValue() + tx.getFee()) return "Недостаточно средств с учётом комиссии";
     if (tx.getValue() < 1L) return "Минимальная сумма перевода — 1 атомарная единица";
-    pendingTransactions.add(tx);
-    System.out.println("new TX(" + tx.getValue() + " FOX from " + tx.getSender() + " to " + tx.getRecipient() + ")");
+    if (tx.getFee() < 0L) return "Комиссия не может быть отрицательной";
+    String result;
+    synchronized (admissionLock) {
+      Account sender = accounts.get(tx.getSender());
+      if (sender == null) return "Недостаточно средств с учётом комиссии";
+      result = mempool.add(tx, sender.getNonce(), sender.getBalance());
+    }
+    if (!result.isEmpty()) return result;
+    producer.onTransaction();
+    if (network != null) network.announce(tx);
+    log.info("tx admitted hash={} value={} fee={} from={} to={}", tx.getHash(), tx.getValue(), tx.getFee(), tx.getSender(), tx.getRecipient());
     return "";
   }
 
+  public CompletableFuture<Block> requestBlock() {
+    return producer.request();
+  }
+
   public Block mineBlock() {
-    Account miner = getOrCreateAccount(nodeWallet.getAddress());
-    miner.addBalance(miningReward);
-    saveAccount(miner);
-    List<Transaction> blockTxs = new ArrayList<>(pendingTransactions);
-    for (Transaction tx : blockTxs) {
+    synchronized (miningLock) {
+      producing = true;
+      BlockAssembler.Template template;
+      boolean prepared;
+      Block block;
+      synchronized (this) {
+        Block latest = getLatestBlock();
+        template = this.template;
+        this.template = null;
+        prepared = template != null && template.parentHash.equals(latest.getHash());
+        if (!prepared) template = assemble(latest);
+        else if (assembler.isStale(template)) assembler.fill(template);
+        block = assembler.seal(template, miningReward);
+      }
+      long start = System.nanoTime();
+      if (!this.miner.mine(block)) {
+        throw new IllegalStateException("Mining cancelled");
+      }
+      long elapsed = System.nanoTime() - start;
+      metrics.mined(elapsed, this.miner.getHashRate());
+      synchronized (this) {
+        if (!getLatestBlock().getHash().equals(block.getPreviousHash())) {
+          throw new IllegalStateException("Mining cancelled: chain tip moved");
+        }
+        for (Transaction tx : block.getTransactions()) {
+          tx.setStatus(1);
+        }
+        commitBlock(block, template.state);
+        log.info("block mined height={} hash={} txs={} rejected={} template={} nonce={} millis={} hashRate={}", template.height, block.getHash(),
+          template.included.size(), template.rejected.size(), prepared ? "prepared" : "fresh", block.getNonce(), elapsed / 1_000_000,
+          Math.round(this.miner.getHashRate()));
+        List<Transaction> done = new ArrayList<>(template.included);
+        done.addAll(template.rejected);
+        mempool.removeConfirmed(done, template.state.nonces());
+      }
+      if (network != null) network.announce(block);
+      return block;
+    }
+  }
+
+  private BlockAssembler.Template assemble(Block latest) {
+    int height = chain.getHeight();
+    BlockHeader tip = latest.header();
+    long minTimestamp = medianTimePast(height, h -> timestampAt(tip, height, h)) + 1;
+    return assembler.assemble(latest.getHash(), height + 1, nextBits(tip, height), minTimestamp, nodeWallet.getAddress());
+  }
+
+  private void prepareTemplate() {
+    if (templateBuilder.isShutdown() || !templateRunning.compareAndSet(false, true)) return;
+    templateBuilder.execute(() -> {
+      try {
+        String built = null;
+        while (!templateBuilder.isShutdown()) {
+          synchronized (this) {
+            Block latest = getLatestBlock();
+            if (latest.getHash().equals(built) || template != null && template.parentHash.equals(latest.getHash())) break;
+            long start = System.nanoTime();
+            template = assemble(latest);
+            built = template.parentHash;
+            log.debug("block template prepared height={} txs={} millis={}", template.height, template.included.size(),
+              (System.nanoTime() - start) / 1_000_000);
+          }
+        }
+      } catch (Exception e) {
+        log.warn("block template not prepared", e);
+      } finally {
+        templateRunning.set(false);
+      }
+    });
+  }
+
+  public String acceptBlock(Block block) {
+    if (chain.isInvalid(block.getHash())) return "known invalid block";
+    if (chain.contains(block.getHash())) return "known block";
+    String error = checkBlock(block);
+    if (!error.isEmpty()) return error;
+    if (chain.isInvalid(block.getPreviousHash())) {
+      invalidate(List.of(block));
+      return "invalid parent " + block.getPreviousHash();
+    }
+    ChainStore.TreeNode parentNode = chain.getNode(block.getPreviousHash());
+    BlockHeader parent = parentNode == null ? null : header(block.getPreviousHash());
+    if (parent == null) return "unknown parent";
+    error = checkHeader(block.header(), parent, parentNode.getHeight());
+    if (!error.isEmpty()) return error;
+    ChainStore.TreeNode node = chain.extend(block.header());
+    if (node == null) return "unknown parent";
+    synchronized (this) {
+      if (chain.contains(block.getHash())) return "known block";
+      if (getLatestBlock().getHash().equals(block.getPreviousHash())) {
+        StateOverlay state = new StateOverlay(accounts);
+        error = apply(block, state);
+        if (!error.isEmpty()) {
+          invalidate(List.of(block));
+          return error;
+        }
+        commitBlock(block, state);
+        miner.cancel();
+        log.info("block accepted height={} hash={} txs={}", node.getHeight(), block.getHash(), block.getTransactions().size());
+        mempool.removeConfirmed(block.getTransactions(), state.nonces());
+        return "";
+      }
+      if (node.getWork().compareTo(chain.getWork()) <= 0) {
+        try (WriteBatch batch = db.createWriteBatch()) {
+          chain.writeSide(batch, block, node);
+          db.write(batch, writeOptions);
+        } catch (IOException e) {
+          throw new RuntimeException("Error storing side block: " + e.getMessage(), e);
+        }
+        log.info("side block stored height={} hash={} tipHeight={}", node.getHeight(), block.getHash(), chain.getHeight());
+        return "";
+      }
+      error = reorganize(block, node);
+      if (error.isEmpty()) miner.cancel();
+      return error;
+    }
+  }
+
+  private void invalidate(List<Block> blocks) {
+    try (WriteBatch batch = db.createWriteBatch()) {
+      for (Block invalid : blocks) {
+        chain.invalidate(batch, invalid.getHash());
+      }
+      db.write(batch, writeOptions);
+    } catch (IOException e) {
+      throw new RuntimeException("Error marking invalid blocks: " + e.getMessage(), e);
+    }
+    log.warn("blocks marked invalid first={} count={}", blocks.get(0).getHash(), blocks.size());
+  }
+
+  String apply(Block block, StateOverlay state) {
+    List<Transaction> txs = block.getTransactions();
+    long fees = 0;
+    for (Transaction tx : txs) {
+      if (tx.isCoinbase()) continue;
+      if (!state.transfer(tx)) return "invalid transfer " + tx.getHash();
+      fees += tx.getFee();
+    }
+    if (!txs.isEmpty() && txs.get(0).isCoinbase()) {
+      Transaction coinbase = txs.get(0);
+      if (coinbase.getValue() < 0 || coinbase.getValue() > miningReward + fees) return "coinbase too large";
+      state.working(coinbase.getRecipient()).addBalance(coinbase.getValue());
+    }
+    for (Transaction tx : txs) {
       tx.setStatus(1);
-      Account sender = getOrCreateAccount(tx.getSender());
-      Account recipient = getOrCreateAccount(tx.getRecipient());
-      sender.addBalance(-(tx.getValue() + tx.getFee()));
-      sender.incrementNonce();
-      recipient.addBalance(tx.getValue());
-      saveAccount(sender);
-      saveAccount(recipient);
-      miner.addBalance(tx.getFee());
-      saveAccount(miner);
-    }
-    Block block = new Block(getLatestBlock().getHash(), blockTxs);
-    block.mineBlock(difficulty);
-    blockchain.add(block);
-    saveBlock(block);
-    System.out.println("new Block(" + block.getHash() + ")");
-    pendingTransactions.clear();
-    return block;
-  }
-
-  public Account getOrCreateAccount(String address) {
-    return accounts.computeIfAbsent(address, k -> {
-      Account newAcc = new Account(address, 0, 0);
-      saveAccount(newAcc);
-      return newAcc;
+    }
+    return "";
+  }
+
+  private String reorganize(Block block, ChainStore.TreeNode node) {
+    List<Block> branch = new ArrayList<>();
+    branch.add(block);
+    String parent = block.getPreviousHash();
+    while (chain.getHeight(parent) < 0) {
+      if (chain.isInvalid(parent)) {
+        invalidate(branch);
+        return "invalid parent " + parent;
+      }
+      Block side = chain.getSideBlock(parent);
+      if (side == null) return "unknown parent";
+      branch.add(side);
+      parent = side.getPreviousHash();
+    }
+    Collections.reverse(branch);
+    int fork = chain.getHeight(parent);
+    if (fork < finalized) return "fork below finalized height " + finalized;
+    int oldHeight = chain.getHeight();
+    StateOverlay state = new StateOverlay(accounts);
+    List<Transaction> orphaned = new ArrayList<>();
+    StateHistory.Version version;
+    try (WriteBatch batch = db.createWriteBatch()) {
+      for (int h = oldHeight; h > fork; h--) {
+        Block old = chain.getBlock(h);
+        if (old == null) return "fork below snapshot base";
+        List<Account> undo = chain.getUndo(old.getHash());
+        if (undo == null) return "missing undo record " + old.getHash();
+        state.restore(undo);
+        chain.disconnect(batch, h, old);
+        addressIndex.erase(batch, h, old);
+        for (Transaction tx : old.getTransactions()) {
+          if (!tx.isCoinbase()) orphaned.add(tx);
+        }
+      }
+      ChainStore.TreeNode tip = chain.getNode(parent);
+      for (int i = 0; i < branch.size(); i++) {
+        Block connected = branch.get(i);
+        String error = apply(connected, state);
+        if (!error.isEmpty()) {
+          invalidate(branch.subList(i, branch.size()));
+          return "invalid branch block " + connected.getHash() + ": " + error;
+        }
+        tip = connected == block ? node : chain.getNode(connected.getHash());
+        chain.write(batch, connected, tip);
+        chain.writeUndo(batch, connected.getHash(), state.endBlock());
+        addressIndex.write(batch, tip.getHeight(), connected);
+      }
+      version = history.publish(node.getHeight(), block.getHash(), state.changed(), false);
+      flush(batch, state);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reorganizing chain: " + e.getMessage(), e);
+    }
+    chain.reorganized(fork, block, node);
+    addressIndex.committed(node.getHeight());
+    history.commit(version);
+    tipChanged();
+    metrics.reorganized(oldHeight - fork);
+    int restored = readmit(orphaned);
+    log.info("chain reorganized fork={} disconnected={} connected={} height={} hash={} readmitted={}",
+      fork, oldHeight - fork, branch.size(), node.getHeight(), block.getHash(), restored);
+    return "";
+  }
+
+  private int readmit(List<Transaction> orphaned) {
+    synchronized (admissionLock) {
+      List<Transaction> candidates = new ArrayList<>(orphaned);
+      candidates.addAll(mempool.drain());
+      candidates.sort(Comparator.comparing(Transaction::getSender).thenComparingLong(Transaction::getNonce));
+      int restored = 0;
+      for (Transaction tx : candidates) {
+        Account sender = accounts.get(tx.getSender());
+        if (sender == null || tx.getNonce() < sender.getNonce()) continue;
+        tx.setStatus(0);
+        if (mempool.add(tx, sender.getNonce(), sender.getBalance()).isEmpty()) restored++;
+      }
+      return restored;
+    }
+  }
+
+  String checkBlock(Block block) {
+    return checkBlock(block, false);
+  }
+
+  String checkBlock(Block block, boolean allowKeyless) {
+    if (!checkProofOfWork(block.header())) return "invalid proof of work";
+    if (block.getTimestamp() > System.currentTimeMillis() + MAX_FUTURE_DRIFT) return "timestamp too far in the future";
+    List<Transaction> txs = block.getTransactions();
+    if (!MerkleTree.of(txs).getRoot().equals(block.getMerkleRoot())) return "merkle root mismatch";
+    for (int i = 0; i < txs.size(); i++) {
+      Transaction tx = txs.get(i);
+      if (tx.isCoinbase()) {
+        if (i != 0) return "coinbase not first";
+        continue;
+      }
+      if (tx.getPublicKey() == null) {
+        if (allowKeyless) continue;
+        return "missing sender key " + tx.getHash();
+      }
+      PublicKey key;
+      try {
+        key = pipeline.publicKey(tx.getSender(), tx.getPublicKey());
+      } catch (Exception e) {
+        return "malformed sender key " + tx.getHash();
+      }
+      if (!tx.getSender().equals(Wallet.getAddressFromPublicKey(key))) return "sender key mismatch " + tx.getHash();
+      Timer.Sample sample = metrics.start();
+      boolean valid = tx.verify(key);
+      metrics.verified(sample);
+      if (!valid) return "invalid signature " + tx.getHash();
+    }
+    return "";
+  }
+
+  public boolean checkProofOfWork(BlockHeader header) {
+    if (header.getHash() == null || !header.getHash().equals(header.calculateHash())) return false;
+    if (!Difficulty.valid(header.getBits())) return false;
+    Hash hash = Hash.parse(header.getHash());
+    return hash != null && Difficulty.meets(hash.bytes(), Difficulty.targetBytes(header.getBits()));
+  }
+
+  String checkHeader(BlockHeader header, BlockHeader parent, int parentHeight, IntToLongFunction timestampAt) {
+    if (header.getTimestamp() <= medianTimePast(parentHeight, timestampAt)) return "timestamp not after median time past";
+    int expected = difficulty.nextBits(parentHeight + 1, parent.getBits(), timestampAt);
+    return header.getBits() == expected ? "" : "unexpected target " + Integer.toHexString(header.getBits());
+  }
+
+  private String checkHeader(BlockHeader header, BlockHeader parent, int parentHeight) {
+    return checkHeader(header, parent, parentHeight, height -> timestampAt(parent, parentHeight, height));
+  }
+
+  static long medianTimePast(int parentHeight, IntToLongFunction timestampAt) {
+    int count = Math.min(MEDIAN_TIME_SPAN, parentHeight + 1);
+    long[] times = new long[count];
+    for (int i = 0; i < count; i++) {
+      times[i] = timestampAt.applyAsLong(parentHeight - i);
+    }
+    Arrays.sort(times);
+    return times[count / 2];
+  }
+
+  private int nextBits(BlockHeader parent, int parentHeight) {
+    return difficulty.nextBits(parentHeight + 1, parent.getBits(), height -> timestampAt(parent, parentHeight, height));
+  }
+
+  private long timestampAt(BlockHeader tip, int tipHeight, int height) {
+    BlockHeader header = tip;
+    for (int h = tipHeight; h > height; h--) {
+      if (chain.getHeight(header.getHash()) == h) return chain.getHeader(height).getTimestamp();
+      header = header(header.getPreviousHash());
+      if (header == null) throw new IllegalStateException("Missing ancestor at height " + (h - 1));
+    }
+    return header.getTimestamp();
+  }
+
+  private BlockHeader header(String hash) {
+    int height = chain.getHeight(hash);
+    if (height >= 0) return chain.getHeader(height);
+    Block side = chain.getSideBlock(hash);
+    return side == null ? null : side.header();
+  }
+
+  private void commitBlock(Block block, StateOverlay state) {
+    ChainStore.TreeNode node = chain.extend(block.header());
+    StateHistory.Version version;
+    try (WriteBatch batch = db.createWriteBatch()) {
+      chain.write(batch, block, node);
+      chain.writeUndo(batch, block.getHash(), state.endBlock());
+      addressIndex.write(batch, node.getHeight(), block);
+      version = history.publish(node.getHeight(), block.getHash(), state.changed(), true);
+      flush(batch, state);
+    } catch (IOException e) {
+      throw new RuntimeException("Error committing block: " + e.getMessage(), e);
+    }
+    chain.committed(block, node);
+    addressIndex.committed(node.getHeight());
+    history.commit(version);
+    tipChanged();
+    if (snapshotWriter != null && node.getHeight() > 0 && node.getHeight() % snapshotInterval == 0) scheduleSnapshot(node.getHeight());
+    if (archiver != null) advanceFinalized(node.getHeight());
+  }
+
+  private void advanceFinalized(int height) {
+    finalized = Math.max(finalized, height - archiveDepth);
+    if (finalized - chain.getArchivedHeight() < archiveSegment || !archiveRunning.compareAndSet(false, true)) return;
+    archiver.execute(() -> {
+      try {
+        while (archiveSegment()) {
+          if (archiver.isShutdown()) break;
+        }
+      } catch (Exception e) {
+        log.error("block archiving failed archived={}", chain.getArchivedHeight(), e);
+      } finally {
+        archiveRunning.set(false);
+      }
     });
   }
 
+  private boolean archiveSegment() throws IOException {
+    long start = System.nanoTime();
+    BlockArchive.Segment segment = chain.archive(finalized);
+    if (segment == null) return false;
+    synchronized (this) {
+      try (WriteBatch batch = db.createWriteBatch()) {
+        if (!chain.archived(batch, segment)) {
+          log.warn("archive segment discarded from={} reason=chain changed", segment.getFirst());
+          return false;
+        }
+        db.write(batch, writeOptions);
+      }
+    }
+    log.info("blocks archived from={} to={} archiveBytes={} millis={}", segment.getFirst(), segment.getLast(), chain.getArchivedBytes(),
+      (System.nanoTime() - start) / 1_000_000);
+    return true;
+  }
+
+  private void scheduleSnapshot(int height) {
+    if (!snapshotRunning.compareAndSet(false, true)) {
+      log.warn("snapshot skipped height={} reason=previous snapshot still running", height);
+      return;
+    }
+    Snapshot snapshot = db.getSnapshot();
+    snapshotWriter.execute(() -> {
+      try {
+        File file = new File(snapshotDir, "snapshot-" + height + ".fox");
+        File tmp = new File(snapshotDir, file.getName() + ".tmp");
+        Files.createDirectories(snapshotDir.toPath());
+        snapshots.export(snapshot, height, tmp.toPath(), snapshotBlocks);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        pruneSnapshots();
+      } catch (Exception e) {
+        log.error("snapshot failed height={}", height, e);
+      } finally {
+        closeQuietly(snapshot);
+        snapshotRunning.set(false);
+      }
+    });
+  }
+
+  private void pruneSnapshots() {
+    File[] files = snapshotDir.listFiles((dir, name) -> name.matches("snapshot-\\d+\\.fox"));
+    if (files == null || files.length <= SNAPSHOT_RETAIN) return;
+    Arrays.sort(files, Comparator.comparingInt((File f) -> Integer.parseInt(f.getName().replaceAll("\\D", ""))).reversed());
+    for (int i = SNAPSHOT_RETAIN; i < files.length; i++) {
+      if (!files[i].delete()) log.warn("snapshot not deleted file={}", files[i]);
+    }
+  }
+
+  public void exportSnapshot(File file) throws IOException {
+    Snapshot snapshot;
+    int height;
+    synchronized (this) {
+      snapshot = db.getSnapshot();
+      height = chain.getHeight();
+    }
+    try {
+      snapshots.export(snapshot, height, file.toPath(), snapshotBlocks);
+    } finally {
+      closeQuietly(snapshot);
+    }
+  }
+
+  private void importSnapshot(File file) throws IOException {
+    if (chain.hasTip() && db.get(IMPORT_KEY) == null) throw new IllegalStateException("Snapshot import requires an empty data directory");
+    clearDatabase();
+    db.put(IMPORT_KEY, new byte[] {1});
+    try {
+      snapshots.load(file.toPath());
+    } catch (IOException | RuntimeException e) {
+      clearDatabase();
+      throw e;
+    }
+    db.delete(IMPORT_KEY);
+  }
+
+  private void clearDatabase() throws IOException {
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seekToFirst();
+      WriteBatch batch = db.createWriteBatch();
+      int count = 0;
+      while (iterator.hasNext()) {
+        batch.delete(iterator.next().getKey());
+        if (++count % 10_000 == 0) {
+          db.write(batch);
+          batch.close();
+          batch = db.createWriteBatch();
+        }
+      }
+      db.write(batch);
+      batch.close();
+    }
+  }
+
+  private static void closeQuietly(Snapshot snapshot) {
+    try {
+      snapshot.close();
+    } catch (IOException e) {
+      log.warn("leveldb snapshot not released", e);
+    }
+  }
+
+  void flush(WriteBatch batch, StateOverlay state) {
+    accounts.update(state.changed());
+    List<Account> flushed = accounts.flush(batch);
+    Timer.Sample sample = metrics.start();
+    db.write(batch, writeOptions);
+    metrics.written(sample);
+    accounts.flushed(flushed);
+  }
+
+  private BigInteger blockWork(BlockHeader header) {
+    return Difficulty.work(header.getBits());
+  }
+
   public Account getAccount(String address) {
-    return accounts.get(address);
+    return history.get(address);
+  }
+
+  public Account getAccount(String address, int height) {
+    return history.get(address, height);
   }
 
-  public List<Transaction> getAccountTransactions(String address) {
-    List<Transaction> result = new ArrayList<>();
-    for (Block block : blockchain) {
-      for (Transaction tx : block.getTransactions()) {
+  public int getStateHeight() {
+    return history.getHeight();
+  }
+
+  public int getOldestStateHeight() {
+    return history.getOldestHeight();
+  }
+
+  public long getPendingNonce(String address) {
+    Account acc = accounts.get(address);
+    return mempool.pendingNonce(address, acc == null ? 0 : acc.getNonce());
+  }
+
+  public int getAccountTransactions(String address, int beforeHeight, int limit, Consumer<Transaction> sink) {
+    if (beforeHeight < 0) {
+      for (Transaction tx : mempool.snapshot()) {
         if (address.equals(tx.getSender()) || address.equals(tx.getRecipient())) {
-          result.add(tx);
+          sink.accept(tx);
         }
       }
     }
-    for (Transaction tx : pendingTransactions) {
-      if (address.equals(tx.getSender()) || address.equals(tx.getRecipient())) {
-        result.add(tx);
+    List<AddressIndex.TxRef> refs = addressIndex.find(address, beforeHeight, limit);
+    Block block = null;
+    int blockHeight = -1;
+    for (AddressIndex.TxRef ref : refs) {
+      if (block == null || blockHeight != ref.getHeight()) {
+        block = chain.getBlock(ref.getHeight());
+        blockHeight = ref.getHeight();
       }
+      sink.accept(block.getTransaction(ref.getIndex()));
     }
-    return result;
+    return refs.size() < limit ? -1 : refs.get(refs.size() - 1).getHeight();
+  }
+
+  public MerkleProof getTransactionProof(String txHash) {
+    Hash id = Hash.parse(txHash);
+    if (id == null) return null;
+    AddressIndex.TxRef ref = addressIndex.locate(id);
+    if (ref == null) return null;
+    Block block = chain.getBlock(ref.getHeight());
+    if (block == null) return null;
+    MerkleProof proof = block.getProof(ref.getIndex());
+    return proof == null ? null : proof.inBlock(block.getHash(), ref.getHeight());
   }
 
   public List<Transaction> getPendingTransactions() {
-    return new ArrayList<>(pendingTransactions);
+    return mempool.snapshot();
   }
 
-  public Block getBlock(int number) {
-    if (number >= 0 && number < blockchain.size()) {
-      return blockchain.get(number);
+  public BlockHeader getHeader(int number) {
+    return chain.getHeader(number);
+  }
+
+  public byte[] getBlockRecord(int number) {
+    return chain.getBlockRecord(number);
+  }
+
+  public int getBlockHeight(String hash) {
+    return chain.getHeight(hash);
+  }
+
+  public int streamBlocks(int from, int to, String previousHash, BlockSink sink) throws IOException {
+    int number = Math.max(from, chain.getBase());
+    String last = previousHash;
+    int streamed = 0;
+    while (number <= to) {
+      Snapshot snapshot = db.getSnapshot();
+      try {
+        ReadOptions options = new ReadOptions().snapshot(snapshot);
+        int end = (int) Math.min(to, (long) number + STREAM_CHUNK - 1);
+        for (; number <= end; number++) {
+          BlockHeader header = chain.getHeader(number, options);
+          byte[] record = header == null ? null : chain.getBlockRecord(number, options);
+          if (record == null || (last != null && !header.getPreviousHash().equals(last))) return streamed;
+          sink.accept(number, header, record);
+          last = header.getHash();
+          streamed++;
+        }
+      } finally {
+        closeQuietly(snapshot);
+      }
+    }
+    return streamed;
+  }
+
+  public boolean awaitHeight(int height, long timeoutMillis) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    tipLock.lock();
+    try {
+      while (chain.getHeight() < height) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) return false;
+        tipMoved.awaitNanos(remaining);
+      }
+      return true;
+    } finally {
+      tipLock.unlock();
+    }
+  }
+
+  private void tipChanged() {
+    tipLock.lock();
+    try {
+      tipMoved.signalAll();
+    } finally {
+      tipLock.unlock();
     }
-    return null;
+    if (producing) prepareTemplate();
+  }
+
+  public boolean hasBlock(String hash) {
+    return chain.contains(hash);
+  }
+
+  public Block getBlock(int number) {
+    return chain.getBlock(number);
   }
 
   public Block getLatestBlock() {
-    return blockchain.get(blockchain.size() - 1);
+    return chain.getLatestBlock();
   }
 
-  private void loadState() {
-    try (DBIterator iterator = db.iterator()) {
+  public int getHeight() {
+    return chain.getHeight();
+  }
+
+  public int getArchivedHeight() {
+    return chain.getArchivedHeight();
+  }
+
+  private void migrateLegacyRecords() throws IOException {
+    byte[] formatKey = bytes("meta_format");
+    byte[] format = db.get(formatKey);
+    if (format != null && format.length == 1 && format[0] >= SerializationUtils.FORMAT_VERSION) return;
+    int migrated = 0;
+    try (DBIterator iterator = db.iterator(); WriteBatch batch = db.createWriteBatch()) {
       iterator.seekToFirst();
-      int blockCnt = 0;
       while (iterator.hasNext()) {
         Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (!SerializationUtils.isLegacy(entry.getValue())) continue;
         String key = asString(entry.getKey());
         if (key.startsWith("block_")) {
-          blockchain.add((Block) SerializationUtils.deserialize(entry.getValue()));
-          blockCnt++;
+          batch.put(entry.getKey(), SerializationUtils.encodeBlock(SerializationUtils.decodeBlock(entry.getValue())));
+          migrated++;
         } else if (key.startsWith("account_")) {
-          Account acc = (Account) SerializationUtils.deserialize(entry.getValue());
-          accounts.put(acc.getAddress(), acc);
+          batch.put(entry.getKey(), SerializationUtils.encodeAccount(SerializationUtils.decodeAccount(entry.getValue())));
+          migrated++;
         }
       }
-      blockchain.sort(Comparator.comparingLong(Block::getTimestamp));
-      System.out.println("Loaded " + blockCnt + " blocks from DB");
-    } catch (Exception e) {
-      System.err.println("Error loading state from DB: " + e.getMessage());
+      batch.put(formatKey, new byte[] {SerializationUtils.FORMAT_VERSION});
+      db.write(batch, new WriteOptions().sync(true));
     }
+    if (migrated > 0) log.info("records migrated count={} format={}", migrated, SerializationUtils.FORMAT_VERSION);
   }
 
-  private void saveBlock(Block block) {
+  public void close() {
+    if (network != null) network.close();
+    pipeline.close();
+    producer.close();
+    miner.close();
+    templateBuilder.shutdown();
     try {
-      db.put(bytes("block_" + block.getHash()), SerializationUtils.serialize(block));
-    } catch (IOException e) {
-      System.err.println("Error saving block: " + e.getMessage());
+      templateBuilder.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
-  }
-
-  private void saveAccount(Account acc) {
-    try {
-      db.put(bytes("account_" + acc.getAddress()), SerializationUtils.serialize(acc));
-    } catch (IOException e) {
-      System.err.println("Error saving account: " + e.getMessage());
+    if (snapshotWriter != null) {
+      snapshotWriter.shutdown();
+      try {
+        snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (archiver != null) {
+      archiver.shutdown();
+      try {
+        archiver.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
     }
-  }
-
-  public void close() {
     try {
       if (db != null) db.close();
     } catch (IOException e) {
-      System.err.println("Error closing LevelDB: " + e.getMessage());
+      log.error("Error closing LevelDB", e);
     }
   }
 
+  long miningReward() { return miningReward; }
+
+  public interface BlockSink {
+    void accept(int height, BlockHeader header, byte[] record) throws IOException;
+  }
+
+  public Miner getMiner() { return miner; }
+  public Mempool getMempool() { return mempool; }
+  public AccountStore getAccounts() { return accounts; }
+  public TransactionPipeline getPipeline() { return pipeline; }
+  public PeerNetwork getNetwork() { return network; }
   public Wallet getNodeWallet() { return nodeWallet; }
   public String getNodeAddress() { return nodeWallet.getAddress(); }
-  public List<Block> getBlockchain() { return blockchain; }
   public int getPort() { return port; }
 }
\ No newline at end of file
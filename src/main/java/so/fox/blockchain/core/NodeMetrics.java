@@ -0,0 +1,131 @@
+package so.fox.blockchain.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import so.fox.blockchain.net.PeerNetwork;
+
+public class NodeMetrics {
+  private static final Map<String, String> REASONS = Map.ofEntries(
+    Map.entry("Отсутствует поле", "missing_field"),
+    Map.entry("Некорректный адрес", "bad_address"),
+    Map.entry("Подпись неверна", "bad_signature"),
+    Map.entry("Нельзя переводить себе", "self_transfer"),
+    Map.entry("Минимальная сумма перевода — 1 атомарная единица", "below_minimum"),
+    Map.entry("Комиссия не может быть отрицательной", "negative_fee"),
+    Map.entry("Недостаточно средств с учётом комиссии", "insufficient_funds"),
+    Map.entry("Некорректный nonce", "bad_nonce"),
+    Map.entry("Транзакция уже в пуле", "duplicate"),
+    Map.entry("Пул транзакций переполнен", "mempool_full"),
+    Map.entry("Очередь проверки переполнена", "queue_full"),
+    Map.entry("Нода остановлена", "shutdown"));
+
+  private final MeterRegistry registry;
+  private final Counter admitted;
+  private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+  private final Timer verify;
+  private final Timer mining;
+  private final DistributionSummary hashRate;
+  private final Timer dbWrite;
+  private final DistributionSummary reorgDepth;
+  private final Timer startup;
+
+  public NodeMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    this.admitted = Counter.builder("fox.tx.admitted")
+      .description("Transactions accepted into the mempool")
+      .register(registry);
+    this.verify = Timer.builder("fox.tx.verify")
+      .description("Transaction signature verification time")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.mining = Timer.builder("fox.block.mining")
+      .description("Proof-of-work search time per block")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.hashRate = DistributionSummary.builder("fox.block.hashrate")
+      .description("Hash rate of each block search")
+      .baseUnit("hashes/s")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.dbWrite = Timer.builder("fox.db.write")
+      .description("LevelDB write batch latency")
+      .publishPercentileHistogram()
+      .register(registry);
+    this.reorgDepth = DistributionSummary.builder("fox.chain.reorg.depth")
+      .description("Blocks disconnected by each chain reorganization")
+      .baseUnit("blocks")
+      .register(registry);
+    this.startup = Timer.builder("fox.node.startup")
+      .description("Time to open the database and load chain state")
+      .register(registry);
+  }
+
+  void bind(Node node) {
+    Gauge.builder("fox.mempool.size", node.getMempool(), Mempool::size)
+      .description("Transactions waiting in the mempool")
+      .register(registry);
+    Gauge.builder("fox.mempool.bytes", node.getMempool(), Mempool::getBytes)
+      .description("Encoded size of the mempool")
+      .baseUnit("bytes")
+      .register(registry);
+    Gauge.builder("fox.chain.height", node, Node::getHeight)
+      .description("Height of the chain tip")
+      .register(registry);
+    Gauge.builder("fox.chain.archived.height", node, Node::getArchivedHeight)
+      .description("Last block moved to archive segments")
+      .register(registry);
+    Gauge.builder("fox.accounts.cache.hit.rate", node.getAccounts(), AccountStore::getHitRate)
+      .description("Account cache hit rate")
+      .register(registry);
+    Gauge.builder("fox.tx.verify.queue", node.getPipeline(), TransactionPipeline::getQueueSize)
+      .description("Transactions waiting for signature verification")
+      .register(registry);
+    if (node.getNetwork() != null) {
+      Gauge.builder("fox.p2p.peers", node.getNetwork(), PeerNetwork::getPeerCount)
+        .description("Connected peers")
+        .register(registry);
+    }
+  }
+
+  void admission(String result) {
+    if (result.isEmpty()) {
+      admitted.increment();
+      return;
+    }
+    rejected.computeIfAbsent(REASONS.getOrDefault(result, "other"), reason -> Counter.builder("fox.tx.rejected")
+      .description("Transactions rejected on admission")
+      .tag("reason", reason)
+      .register(registry)).increment();
+  }
+
+  Timer.Sample start() {
+    return Timer.start(registry);
+  }
+
+  void verified(Timer.Sample sample) {
+    sample.stop(verify);
+  }
+
+  void mined(long nanos, double hashesPerSecond) {
+    mining.record(nanos, TimeUnit.NANOSECONDS);
+    hashRate.record(hashesPerSecond);
+  }
+
+  void written(Timer.Sample sample) {
+    sample.stop(dbWrite);
+  }
+
+  void reorganized(int depth) {
+    reorgDepth.record(depth);
+  }
+
+  void started(Timer.Sample sample) {
+    sample.stop(startup);
+  }
+}
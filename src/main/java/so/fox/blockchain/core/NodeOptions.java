@@ -0,0 +1,244 @@
+package so.fox.blockchain.core;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NodeOptions {
+  private File dataDir;
+  private int blockCacheSize = 1024;
+  private int accountCacheSize = 100_000;
+  private int minerThreads = Runtime.getRuntime().availableProcessors();
+  private boolean syncWrites = true;
+  private int mempoolCapacity = 50_000;
+  private int verifyThreads = Runtime.getRuntime().availableProcessors();
+  private int verifyQueue = 10_000;
+  private int keyCacheSize = 100_000;
+  private long maxBlockInterval = 10_000;
+  private int maxBlockTxCount = 1_000;
+  private long maxBlockBytes = 1 << 20;
+  private MeterRegistry meterRegistry = Metrics.globalRegistry;
+  private int p2pPort;
+  private List<String> peers = new ArrayList<>();
+  private boolean verifyChain;
+  private int snapshotInterval;
+  private File snapshotDir;
+  private int snapshotBlocks = 100;
+  private File snapshotImport;
+  private int stateHistory = 128;
+  private int retargetWindow = 0;
+  private long targetInterval = 10_000;
+  private int archiveDepth;
+  private File archiveDir;
+  private int archiveSegment = 4096;
+  private StorageEngine storageEngine = StorageEngine.IQ80;
+
+  public NodeOptions dataDir(File dataDir) {
+    this.dataDir = dataDir;
+    return this;
+  }
+
+  public File dataDir() { return dataDir; }
+
+  public NodeOptions blockCacheSize(int blockCacheSize) {
+    if (blockCacheSize < 1) throw new IllegalArgumentException("Block cache size must be positive");
+    this.blockCacheSize = blockCacheSize;
+    return this;
+  }
+
+  public int blockCacheSize() { return blockCacheSize; }
+
+  public NodeOptions accountCacheSize(int accountCacheSize) {
+    if (accountCacheSize < 1) throw new IllegalArgumentException("Account cache size must be positive");
+    this.accountCacheSize = accountCacheSize;
+    return this;
+  }
+
+  public int accountCacheSize() { return accountCacheSize; }
+
+  public NodeOptions minerThreads(int minerThreads) {
+    this.minerThreads = minerThreads > 0 ? minerThreads : Runtime.getRuntime().availableProcessors();
+    return this;
+  }
+
+  public int minerThreads() { return minerThreads; }
+
+  public NodeOptions syncWrites(boolean syncWrites) {
+    this.syncWrites = syncWrites;
+    return this;
+  }
+
+  public boolean syncWrites() { return syncWrites; }
+
+  public NodeOptions mempoolCapacity(int mempoolCapacity) {
+    if (mempoolCapacity < 1) throw new IllegalArgumentException("Mempool capacity must be positive");
+    this.mempoolCapacity = mempoolCapacity;
+    return this;
+  }
+
+  public int mempoolCapacity() { return mempoolCapacity; }
+
+  public NodeOptions verifyThreads(int verifyThreads) {
+    this.verifyThreads = verifyThreads > 0 ? verifyThreads : Runtime.getRuntime().availableProcessors();
+    return this;
+  }
+
+  public int verifyThreads() { return verifyThreads; }
+
+  public NodeOptions verifyQueue(int verifyQueue) {
+    if (verifyQueue < 1) throw new IllegalArgumentException("Verification queue size must be positive");
+    this.verifyQueue = verifyQueue;
+    return this;
+  }
+
+  public int verifyQueue() { return verifyQueue; }
+
+  public NodeOptions keyCacheSize(int keyCacheSize) {
+    if (keyCacheSize < 1) throw new IllegalArgumentException("Key cache size must be positive");
+    this.keyCacheSize = keyCacheSize;
+    return this;
+  }
+
+  public int keyCacheSize() { return keyCacheSize; }
+
+  public NodeOptions maxBlockInterval(long maxBlockInterval) {
+    if (maxBlockInterval < 1) throw new IllegalArgumentException("Block interval must be positive");
+    this.maxBlockInterval = maxBlockInterval;
+    return this;
+  }
+
+  public long maxBlockInterval() { return maxBlockInterval; }
+
+  public NodeOptions maxBlockTxCount(int maxBlockTxCount) {
+    if (maxBlockTxCount < 1) throw new IllegalArgumentException("Block transaction count must be positive");
+    this.maxBlockTxCount = maxBlockTxCount;
+    return this;
+  }
+
+  public int maxBlockTxCount() { return maxBlockTxCount; }
+
+  public NodeOptions maxBlockBytes(long maxBlockBytes) {
+    if (maxBlockBytes < 1) throw new IllegalArgumentException("Block size must be positive");
+    this.maxBlockBytes = maxBlockBytes;
+    return this;
+  }
+
+  public long maxBlockBytes() { return maxBlockBytes; }
+
+  public NodeOptions meterRegistry(MeterRegistry meterRegistry) {
+    if (meterRegistry == null) throw new IllegalArgumentException("Meter registry must not be null");
+    this.meterRegistry = meterRegistry;
+    return this;
+  }
+
+  public MeterRegistry meterRegistry() { return meterRegistry; }
+
+  public NodeOptions p2pPort(int p2pPort) {
+    if (p2pPort < 0 || p2pPort > 65535) throw new IllegalArgumentException("P2P port out of range");
+    this.p2pPort = p2pPort;
+    return this;
+  }
+
+  public int p2pPort() { return p2pPort; }
+
+  public NodeOptions peers(List<String> peers) {
+    this.peers = new ArrayList<>(peers);
+    return this;
+  }
+
+  public List<String> peers() { return peers; }
+
+  public NodeOptions verifyChain(boolean verifyChain) {
+    this.verifyChain = verifyChain;
+    return this;
+  }
+
+  public boolean verifyChain() { return verifyChain; }
+
+  public NodeOptions snapshotInterval(int snapshotInterval) {
+    if (snapshotInterval < 0) throw new IllegalArgumentException("Snapshot interval must not be negative");
+    this.snapshotInterval = snapshotInterval;
+    return this;
+  }
+
+  public int snapshotInterval() { return snapshotInterval; }
+
+  public NodeOptions snapshotDir(File snapshotDir) {
+    this.snapshotDir = snapshotDir;
+    return this;
+  }
+
+  public File snapshotDir() { return snapshotDir; }
+
+  public NodeOptions snapshotBlocks(int snapshotBlocks) {
+    if (snapshotBlocks < 1) throw new IllegalArgumentException("Snapshot block count must be positive");
+    this.snapshotBlocks = snapshotBlocks;
+    return this;
+  }
+
+  public int snapshotBlocks() { return snapshotBlocks; }
+
+  public NodeOptions snapshotImport(File snapshotImport) {
+    this.snapshotImport = snapshotImport;
+    return this;
+  }
+
+  public File snapshotImport() { return snapshotImport; }
+
+  public NodeOptions stateHistory(int stateHistory) {
+    if (stateHistory < 1) throw new IllegalArgumentException("State history must keep at least one version");
+    this.stateHistory = stateHistory;
+    return this;
+  }
+
+  public int stateHistory() { return stateHistory; }
+
+  public NodeOptions retargetWindow(int retargetWindow) {
+    if (retargetWindow < 0 || retargetWindow == 1) throw new IllegalArgumentException("Retarget window must be 0 (disabled) or at least 2 blocks");
+    this.retargetWindow = retargetWindow;
+    return this;
+  }
+
+  public int retargetWindow() { return retargetWindow; }
+
+  public NodeOptions targetInterval(long targetInterval) {
+    if (targetInterval < 1) throw new IllegalArgumentException("Target block interval must be positive");
+    this.targetInterval = targetInterval;
+    return this;
+  }
+
+  public long targetInterval() { return targetInterval; }
+
+  public NodeOptions archiveDepth(int archiveDepth) {
+    if (archiveDepth < 0) throw new IllegalArgumentException("Archive depth must not be negative");
+    this.archiveDepth = archiveDepth;
+    return this;
+  }
+
+  public int archiveDepth() { return archiveDepth; }
+
+  public NodeOptions archiveDir(File archiveDir) {
+    this.archiveDir = archiveDir;
+    return this;
+  }
+
+  public File archiveDir() { return archiveDir; }
+
+  public NodeOptions archiveSegment(int archiveSegment) {
+    if (archiveSegment < 1) throw new IllegalArgumentException("Archive segment must hold at least one block");
+    this.archiveSegment = archiveSegment;
+    return this;
+  }
+
+  public int archiveSegment() { return archiveSegment; }
+
+  public NodeOptions storageEngine(StorageEngine storageEngine) {
+    if (storageEngine == null) throw new IllegalArgumentException("Storage engine must be set");
+    this.storageEngine = storageEngine;
+    return this;
+  }
+
+  public StorageEngine storageEngine() { return storageEngine; }
+}
@@ -0,0 +1,128 @@
+package so.fox.blockchain.core;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import so.fox.blockchain.wallet.Account;
+
+final class StateHistory {
+  private static final Account RETRY = new Account("retry", 0, 0);
+
+  private final AccountStore accounts;
+  private final int retain;
+  private volatile Version head;
+
+  StateHistory(AccountStore accounts, int retain) {
+    this.accounts = accounts;
+    this.retain = retain;
+  }
+
+  void reset(int height, String hash) {
+    Version version = new Version(height, hash, Map.of(), null);
+    version.visible = true;
+    head = version;
+  }
+
+  Version publish(int height, String hash, Collection<Account> changed, boolean extendsHead) {
+    Map<String, Account> before = new HashMap<>(changed.size() * 2);
+    for (Account acc : changed) {
+      before.put(acc.getAddress(), accounts.get(acc.getAddress()));
+    }
+    Version previous = head;
+    Version version = new Version(height, hash, before, extendsHead ? previous : null);
+    version.previous = previous;
+    head = version;
+    return version;
+  }
+
+  void commit(Version version) {
+    version.visible = true;
+    version.previous = null;
+    Version cut = version;
+    for (int i = 1; i < retain && cut != null; i++) {
+      cut = cut.parent;
+    }
+    if (cut != null) cut.parent = null;
+  }
+
+  int getHeight() {
+    Version version = visible();
+    return version == null ? -1 : version.height;
+  }
+
+  int getOldestHeight() {
+    Version version = visible();
+    if (version == null) return -1;
+    for (Version parent = version.parent; parent != null; parent = version.parent) {
+      version = parent;
+    }
+    return version.height;
+  }
+
+  Account get(String address) {
+    while (true) {
+      Version target = visible();
+      if (target == null) return accounts.get(address);
+      Account acc = read(address, target);
+      if (acc != RETRY) return acc;
+    }
+  }
+
+  Account get(String address, int height) {
+    while (true) {
+      Version target = visible();
+      if (target == null) return accounts.get(address);
+      if (height > target.height) throw new IllegalArgumentException("Height " + height + " is above the chain tip");
+      while (target != null && target.height > height) {
+        target = target.parent;
+      }
+      if (target == null || target.height != height) throw new IllegalArgumentException("State at height " + height + " is not retained");
+      Account acc = read(address, target);
+      if (acc != RETRY) return acc;
+    }
+  }
+
+  private Account read(String address, Version target) {
+    Version top = head;
+    Version found = null;
+    for (Version version = top; version != target; version = next(version)) {
+      if (version == null) return RETRY;
+      if (version.before.containsKey(address)) found = version;
+    }
+    if (found != null) return found.before.get(address);
+    Account stored = accounts.get(address);
+    for (Version version = head; version != top; version = next(version)) {
+      if (version == null) return RETRY;
+      if (version.before.containsKey(address)) found = version;
+    }
+    return found != null ? found.before.get(address) : stored;
+  }
+
+  private static Version next(Version version) {
+    return version.visible ? version.parent : version.previous;
+  }
+
+  private Version visible() {
+    Version version = head;
+    while (version != null && !version.visible) {
+      version = version.previous;
+    }
+    return version;
+  }
+
+  static final class Version {
+    final int height;
+    final String hash;
+    final Map<String, Account> before;
+    volatile Version parent;
+    volatile Version previous;
+    volatile boolean visible;
+
+    Version(int height, String hash, Map<String, Account> before, Version parent) {
+      this.height = height;
+      this.hash = hash;
+      this.before = before;
+      this.parent = parent;
+    }
+  }
+}
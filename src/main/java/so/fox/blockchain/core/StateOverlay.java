@@ -0,0 +1,71 @@
+package so.fox.blockchain.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import so.fox.blockchain.wallet.Account;
+
+final class StateOverlay {
+  private final AccountStore accounts;
+  private final Map<String, Account> touched = new HashMap<>();
+  private Map<String, Account> undo = new LinkedHashMap<>();
+
+  StateOverlay(AccountStore accounts) {
+    this.accounts = accounts;
+  }
+
+  Account get(String address) {
+    Account acc = touched.get(address);
+    return acc != null ? acc : accounts.get(address);
+  }
+
+  Account working(String address) {
+    Account acc = touched.get(address);
+    if (acc == null) {
+      Account current = accounts.get(address);
+      acc = current == null ? new Account(address, 0, 0) : new Account(address, current.getBalance(), current.getNonce());
+      touched.put(address, acc);
+    }
+    if (!undo.containsKey(address)) undo.put(address, new Account(address, acc.getBalance(), acc.getNonce()));
+    return acc;
+  }
+
+  boolean transfer(Transaction tx) {
+    if (tx.isCoinbase() || tx.getValue() < 1 || tx.getFee() < 0 || tx.getSender().equals(tx.getRecipient())) return false;
+    Account current = get(tx.getSender());
+    if (current == null || current.getNonce() != tx.getNonce()) return false;
+    if (tx.getFee() > current.getBalance() || tx.getValue() > current.getBalance() - tx.getFee()) return false;
+    Account sender = working(tx.getSender());
+    sender.addBalance(-(tx.getValue() + tx.getFee()));
+    sender.incrementNonce();
+    working(tx.getRecipient()).addBalance(tx.getValue());
+    return true;
+  }
+
+  void restore(List<Account> previous) {
+    for (Account acc : previous) {
+      touched.put(acc.getAddress(), new Account(acc.getAddress(), acc.getBalance(), acc.getNonce()));
+    }
+  }
+
+  List<Account> endBlock() {
+    List<Account> record = new ArrayList<>(undo.values());
+    undo = new LinkedHashMap<>();
+    return record;
+  }
+
+  Collection<Account> changed() {
+    return touched.values();
+  }
+
+  Map<String, Long> nonces() {
+    Map<String, Long> nonces = new HashMap<>();
+    for (Account acc : touched.values()) {
+      nonces.put(acc.getAddress(), acc.getNonce());
+    }
+    return nonces;
+  }
+}
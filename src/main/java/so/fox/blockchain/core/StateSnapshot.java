@@ -0,0 +1,351 @@
+package so.fox.blockchain.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
+import org.iq80.leveldb.WriteBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+
+final class StateSnapshot {
+  private static final Logger log = LoggerFactory.getLogger(StateSnapshot.class);
+  private static final int MAGIC = 0x464F5853;
+  private static final byte VERSION = 1;
+  private static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 32;
+  private static final int TRAILER_SIZE = 8 + 4;
+  private static final int CHUNK = 1 << 20;
+  private static final int MAX_ENTRY = 16 << 20;
+  private static final int MAX_INFLATE_RATIO = 1032;
+  private static final int BATCH_ENTRIES = 10_000;
+
+  private static final byte END = 0;
+  private static final byte HEADER = 1;
+  private static final byte ACCOUNT = 2;
+  private static final byte UNDO = 3;
+  private static final byte BLOCK = 4;
+
+  private final Node node;
+  private final ChainStore chain;
+  private final AddressIndex addressIndex;
+  private final AccountStore accounts;
+  private final DB db;
+
+  StateSnapshot(Node node, ChainStore chain, AddressIndex addressIndex, AccountStore accounts, DB db) {
+    this.node = node;
+    this.chain = chain;
+    this.addressIndex = addressIndex;
+    this.accounts = accounts;
+    this.db = db;
+  }
+
+  void export(Snapshot snapshot, int height, Path path, int recentBlocks) throws IOException {
+    long start = System.nanoTime();
+    ReadOptions options = new ReadOptions().snapshot(snapshot);
+    int base = Math.max(0, Math.max(height - recentBlocks + 1, chain.getBase()));
+    List<String> hashes = new ArrayList<>(height - base + 1);
+    long[] count = new long[1];
+    try (Writer writer = new Writer(path)) {
+      String tip = null;
+      for (int number = 0; number <= height; number++) {
+        BlockHeader header = chain.getHeader(number, options);
+        if (header == null) throw new IOException("Missing header " + number);
+        writer.put(HEADER, SerializationUtils.encodeHeader(header));
+        if (number >= base) hashes.add(header.getHash());
+        tip = header.getHash();
+      }
+      accounts.forEachRecord(options, record -> {
+        writer.put(ACCOUNT, record);
+        count[0]++;
+      });
+      for (String hash : hashes) {
+        byte[] undo = chain.getUndoRecord(hash, options);
+        if (undo == null) continue;
+        writer.put(UNDO, ByteBuffer.allocate(32 + undo.length).put(Hash.parse(hash).bytes()).put(undo).array());
+      }
+      for (int number = base; number <= height; number++) {
+        byte[] record = chain.getBlockRecord(number, options);
+        if (record == null) throw new IOException("Missing block " + number);
+        writer.put(BLOCK, record);
+      }
+      writer.finish(height, base, Hash.parse(tip));
+    }
+    log.info("snapshot written height={} base={} accounts={} file={} bytes={} millis={}", height, base, count[0], path,
+      path.toFile().length(), (System.nanoTime() - start) / 1_000_000);
+  }
+
+  void load(Path path) throws IOException {
+    long start = System.nanoTime();
+    try (Reader reader = new Reader(path)) {
+      int base = reader.base;
+      List<ChainStore.TreeNode> recent = new ArrayList<>();
+      List<String> hashes = new ArrayList<>();
+      BigInteger work = BigInteger.ZERO;
+      String previousHash = "0";
+      BlockHeader previous = null;
+      long[] timestamps = new long[1024];
+      int headers = 0;
+      int blocks = 0;
+      long accountCount = 0;
+      WriteBatch batch = db.createWriteBatch();
+      int pending = 0;
+      try {
+        for (byte type = reader.next(); type != END; type = reader.next()) {
+          byte[] payload = reader.payload();
+          if (type == HEADER) {
+            BlockHeader header = SerializationUtils.decodeHeader(payload);
+            if (!header.getPreviousHash().equals(previousHash)) throw new IOException("Header " + headers + " does not link");
+            if (!node.checkProofOfWork(header)) throw new IOException("Invalid proof of work in header " + headers);
+            if (headers == timestamps.length) timestamps = Arrays.copyOf(timestamps, headers * 2);
+            if (previous != null) {
+              long[] known = timestamps;
+              String error = node.checkHeader(header, previous, headers - 1, height -> known[height]);
+              if (!error.isEmpty()) throw new IOException("Invalid header " + headers + ": " + error);
+            }
+            timestamps[headers] = header.getTimestamp();
+            work = work.add(chain.work(header));
+            ChainStore.TreeNode treeNode = new ChainStore.TreeNode(headers, work);
+            chain.writeHeader(batch, header, treeNode);
+            if (headers >= base) {
+              recent.add(treeNode);
+              hashes.add(header.getHash());
+            }
+            previousHash = header.getHash();
+            previous = header;
+            headers++;
+          } else if (type == ACCOUNT) {
+            Account acc = SerializationUtils.decodeAccount(payload);
+            batch.put(AccountStore.key(acc.getAddress()), SerializationUtils.encodeAccount(acc));
+            accountCount++;
+          } else if (type == UNDO) {
+            byte[] hash = Arrays.copyOf(payload, 32);
+            byte[] record = Arrays.copyOfRange(payload, 32, payload.length);
+            chain.writeUndo(batch, Hash.of(hash).toHex(), SerializationUtils.decodeUndo(record));
+          } else if (type == BLOCK) {
+            Block block = SerializationUtils.decodeBlock(payload);
+            if (blocks >= hashes.size() || !block.getHash().equals(hashes.get(blocks))) throw new IOException("Unexpected block " + block.getHash());
+            String error = node.checkBlock(block);
+            if (!error.isEmpty()) throw new IOException("Invalid block " + block.getHash() + ": " + error);
+            chain.write(batch, block, recent.get(blocks));
+            addressIndex.write(batch, base + blocks, block);
+            blocks++;
+          } else {
+            throw new IOException("Unknown snapshot entry " + type);
+          }
+          if (++pending >= BATCH_ENTRIES) {
+            db.write(batch);
+            batch.close();
+            batch = db.createWriteBatch();
+            pending = 0;
+          }
+        }
+        reader.verify();
+        if (headers != reader.height + 1 || blocks != hashes.size() || !previousHash.equals(reader.tip.toHex())) {
+          throw new IOException("Snapshot is incomplete");
+        }
+        chain.imported(batch, base);
+        db.write(batch);
+      } finally {
+        batch.close();
+      }
+      log.info("snapshot loaded height={} base={} accounts={} blocks={} millis={}", reader.height, base, accountCount, blocks,
+        (System.nanoTime() - start) / 1_000_000);
+    }
+  }
+
+  private static final class Writer implements Closeable {
+    private final FileChannel channel;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer in = ByteBuffer.allocate(CHUNK);
+    private final ByteBuffer out = ByteBuffer.allocateDirect(CHUNK);
+    private long entries;
+
+    Writer(Path path) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      channel.position(HEADER_SIZE);
+    }
+
+    void put(byte type, byte[] payload) {
+      try {
+        if (in.remaining() < 5) drain();
+        in.put(type).putInt(payload.length);
+        for (int offset = 0; offset < payload.length; ) {
+          if (!in.hasRemaining()) drain();
+          int length = Math.min(in.remaining(), payload.length - offset);
+          in.put(payload, offset, length);
+          offset += length;
+        }
+        entries++;
+      } catch (IOException e) {
+        throw new RuntimeException("Error writing snapshot: " + e.getMessage(), e);
+      }
+    }
+
+    void finish(int height, int base, Hash tip) throws IOException {
+      if (!in.hasRemaining()) drain();
+      in.put(END);
+      drain();
+      deflater.setInput(new byte[0]);
+      deflater.finish();
+      while (!deflater.finished()) {
+        deflater.deflate(out);
+        write();
+      }
+      ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).putLong(entries).putInt((int) crc.getValue());
+      trailer.flip();
+      while (trailer.hasRemaining()) channel.write(trailer);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).putInt(height).putInt(base).put(tip.bytes());
+      header.flip();
+      channel.write(header, 0);
+      channel.force(true);
+    }
+
+    private void drain() throws IOException {
+      in.flip();
+      crc.update(in.duplicate());
+      deflater.setInput(in);
+      while (!deflater.needsInput()) {
+        deflater.deflate(out);
+        write();
+      }
+      in.clear();
+    }
+
+    private void write() throws IOException {
+      out.flip();
+      while (out.hasRemaining()) channel.write(out);
+      out.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      deflater.end();
+      channel.close();
+    }
+  }
+
+  private static final class Reader implements Closeable {
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater();
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer in = ByteBuffer.allocateDirect(CHUNK);
+    private final ByteBuffer out = ByteBuffer.allocate(CHUNK);
+    private final long end;
+    private final long expectedEntries;
+    private final int expectedCrc;
+    private long position = HEADER_SIZE;
+    private long entries;
+    private int length;
+    final int height;
+    final int base;
+    final Hash tip;
+
+    Reader(Path path) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      long size = channel.size();
+      if (size < HEADER_SIZE + TRAILER_SIZE) throw new IOException("Snapshot is truncated");
+      ByteBuffer header = readAt(0, HEADER_SIZE);
+      if (header.getInt() != MAGIC || header.get() != VERSION) throw new IOException("Not a snapshot file: " + path);
+      this.height = header.getInt();
+      this.base = header.getInt();
+      byte[] hash = new byte[32];
+      header.get(hash);
+      this.tip = Hash.of(hash);
+      ByteBuffer trailer = readAt(size - TRAILER_SIZE, TRAILER_SIZE);
+      this.expectedEntries = trailer.getLong();
+      this.expectedCrc = trailer.getInt();
+      this.end = size - TRAILER_SIZE;
+      out.limit(0);
+      in.limit(0);
+    }
+
+    byte next() throws IOException {
+      byte type = readFully(new byte[1])[0];
+      if (type == END) return END;
+      length = ByteBuffer.wrap(readFully(new byte[4])).getInt();
+      if (length < 0 || length > MAX_ENTRY || length > available()) throw new IOException("Corrupt snapshot entry length " + length);
+      entries++;
+      return type;
+    }
+
+    byte[] payload() throws IOException {
+      return readFully(new byte[length]);
+    }
+
+    private long available() {
+      return out.remaining() + (end - position + inflater.getRemaining()) * MAX_INFLATE_RATIO;
+    }
+
+    void verify() throws IOException {
+      if (entries != expectedEntries || (int) crc.getValue() != expectedCrc) throw new IOException("Snapshot checksum mismatch");
+    }
+
+    private byte[] readFully(byte[] target) throws IOException {
+      int offset = 0;
+      while (offset < target.length) {
+        if (!out.hasRemaining()) fill();
+        int n = Math.min(out.remaining(), target.length - offset);
+        out.get(target, offset, n);
+        offset += n;
+      }
+      return target;
+    }
+
+    private void fill() throws IOException {
+      out.clear();
+      try {
+        while (out.position() == 0) {
+          if (inflater.finished()) throw new IOException("Snapshot is truncated");
+          if (inflater.needsInput()) {
+            if (position >= end) throw new IOException("Snapshot is truncated");
+            in.clear();
+            in.limit((int) Math.min(CHUNK, end - position));
+            while (in.hasRemaining()) {
+              int n = channel.read(in, position);
+              if (n < 0) throw new IOException("Snapshot is truncated");
+              position += n;
+            }
+            in.flip();
+            inflater.setInput(in);
+          }
+          inflater.inflate(out);
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupt snapshot data: " + e.getMessage(), e);
+      }
+      out.flip();
+      crc.update(out.duplicate());
+    }
+
+    private ByteBuffer readAt(long offset, int size) throws IOException {
+      ByteBuffer buf = ByteBuffer.allocate(size);
+      while (buf.hasRemaining()) {
+        if (channel.read(buf, offset + buf.position()) < 0) throw new IOException("Snapshot is truncated");
+      }
+      buf.flip();
+      return buf;
+    }
+
+    @Override
+    public void close() throws IOException {
+      inflater.end();
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package so.fox.blockchain.core;
+
+import java.io.File;
+import java.io.IOException;
+import org.fusesource.leveldbjni.JniDBFactory;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+
+public enum StorageEngine {
+  IQ80("iq80") {
+    @Override
+    public DB open(File dir, Options options) throws IOException {
+      return Iq80DBFactory.factory.open(dir, options);
+    }
+  },
+  LEVELDBJNI("leveldbjni") {
+    @Override
+    public DB open(File dir, Options options) throws IOException {
+      try {
+        return JniDBFactory.factory.open(dir, options);
+      } catch (UnsatisfiedLinkError | NoClassDefFoundError e) {
+        throw new IllegalStateException("leveldbjni is not available on this platform: " + e.getMessage(), e);
+      }
+    }
+  },
+  MEMORY("memory") {
+    @Override
+    public DB open(File dir, Options options) {
+      return new MemoryDB();
+    }
+  };
+
+  private final String id;
+
+  StorageEngine(String id) {
+    this.id = id;
+  }
+
+  public abstract DB open(File dir, Options options) throws IOException;
+
+  public String getId() { return id; }
+
+  public static StorageEngine of(String id) {
+    for (StorageEngine engine : values()) {
+      if (engine.id.equalsIgnoreCase(id)) return engine;
+    }
+    throw new IllegalArgumentException("Unknown storage engine: " + id + " (expected iq80, leveldbjni or memory)");
+  }
+}
@@ -1,7 +1,7 @@
 package so.fox.blockchain.core;
 
 import java.io.Serializable;
-import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.util.Base64;
@@ -9,6 +9,8 @@ import java.util.Base64;
 public class Transaction implements Serializable {
   private static final long serialVersionUID = 1L;
 
+  public static final String COINBASE = "0";
+
   private final String sender;
   private final String recipient;
   private final long value;
@@ -17,7 +19,9 @@ public class Transaction implements Serializable {
   private final long nonce;
   private final String comment;
   private final String signature;
+  private final String publicKey;
   private int status;  // 0 - pending | 1 - accepted | 2 - rejected
+  private transient Hash id;
 
   public Transaction(String sender, String recipient, long value, long fee, long nonce, String comment, String signature) {
     this.sender = sender;
@@ -28,13 +32,48 @@ public class Transaction implements Serializable {
     this.nonce = nonce;
     this.comment = comment;
     this.signature = signature;
+    this.publicKey = null;
     this.status = 0;
   }
 
+  public Transaction(String sender, String recipient, long value, long fee, long timestamp, long nonce, String comment, String signature, String publicKey, int status) {
+    this.sender = sender;
+    this.recipient = recipient;
+    this.value = value;
+    this.fee = fee;
+    this.timestamp = timestamp;
+    this.nonce = nonce;
+    this.comment = comment;
+    this.signature = signature;
+    this.publicKey = publicKey;
+    this.status = status;
+  }
+
+  public static Transaction coinbase(String miner, long value, long height) {
+    return new Transaction(COINBASE, miner, value, 0, System.currentTimeMillis(), height, "", null, null, 0);
+  }
+
+  public Transaction withPublicKey(String publicKey) {
+    Transaction copy = new Transaction(sender, recipient, value, fee, timestamp, nonce, comment, signature, publicKey, status);
+    copy.id = id;
+    return copy;
+  }
+
+  public boolean isCoinbase() {
+    return COINBASE.equals(sender);
+  }
+
   public boolean verify(PublicKey senderKey) {
+    try {
+      return verify(senderKey, Signature.getInstance("SHA256withRSA"));
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  public boolean verify(PublicKey senderKey, Signature sig) {
     try {
       String data = sender + "|" + recipient + "|" + value + "|" + fee + "|" + nonce + "|" + comment;
-      Signature sig = Signature.getInstance("SHA256withRSA");
       sig.initVerify(senderKey);
       sig.update(data.getBytes("UTF-8"));
       return sig.verify(Base64.getDecoder().decode(signature));
@@ -43,21 +82,18 @@ public class Transaction implements Serializable {
     }
   }
 
-  public String getHash() {
-    try {
+  public Hash id() {
+    Hash h = id;
+    if (h == null) {
       String data = sender + "|" + recipient + "|" + value + "|" + fee + "|" + nonce + "|" + comment + signature;
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      byte[] hashBytes = digest.digest(data.getBytes("UTF-8"));
-      StringBuilder hexString = new StringBuilder();
-      for (byte b : hashBytes) {
-        String hex = Integer.toHexString(0xff & b);
-        if (hex.length() == 1) hexString.append('0');
-        hexString.append(hex);
-      }
-      return hexString.toString();
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+      h = Hash.sha256(data.getBytes(StandardCharsets.UTF_8));
+      id = h;
     }
+    return h;
+  }
+
+  public String getHash() {
+    return id().toHex();
   }
 
   public String getSender() { return sender; }
@@ -68,6 +104,7 @@ public class Transaction implements Serializable {
   public long getNonce() { return nonce; }
   public String getComment() { return comment; }
   public String getSignature() { return signature; }
+  public String getPublicKey() { return publicKey; }
   public int getStatus() { return status; }
   public void setStatus(int s) { this.status = s; }
 }
\ No newline at end of file
@@ -0,0 +1,233 @@
+package so.fox.blockchain.core;
+
+import io.micrometer.core.instrument.Timer;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import so.fox.blockchain.wallet.Wallet;
+
+public class TransactionPipeline {
+  private static final int BATCH_SIZE = 64;
+
+  private final BlockingQueue<Job> queue;
+  private final Set<Hash> inFlight = ConcurrentHashMap.newKeySet();
+  private final Map<String, PublicKey> keys;
+  private final Mempool mempool;
+  private final Function<Transaction, String> admission;
+  private final NodeMetrics metrics;
+  private final List<Thread> workers = new ArrayList<>();
+  private volatile boolean running = true;
+
+  public TransactionPipeline(Mempool mempool, Function<Transaction, String> admission, NodeMetrics metrics, int threads, int queueCapacity, int keyCacheSize) {
+    this.mempool = mempool;
+    this.admission = admission;
+    this.metrics = metrics;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.keys = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PublicKey> eldest) {
+        return size() > keyCacheSize;
+      }
+    };
+    for (int i = 0; i < threads; i++) {
+      Thread t = new Thread(this::work, "tx-verify-" + (i + 1));
+      t.setDaemon(true);
+      t.start();
+      workers.add(t);
+    }
+  }
+
+  public PublicKey publicKey(String address, String publicKeyB64) throws Exception {
+    byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyB64);
+    PublicKey cached;
+    synchronized (keys) {
+      cached = keys.get(address);
+    }
+    if (cached != null && Arrays.equals(cached.getEncoded(), publicKeyBytes)) return cached;
+    return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+  }
+
+  public CompletableFuture<String> submit(Transaction tx, PublicKey senderKey) {
+    return enqueue(tx, senderKey, true);
+  }
+
+  public CompletableFuture<List<String>> submitAll(List<Transaction> txs, List<PublicKey> senderKeys) {
+    List<CompletableFuture<String>> checks = new ArrayList<>(txs.size());
+    for (int i = 0; i < txs.size(); i++) {
+      checks.add(enqueue(txs.get(i), senderKeys.get(i), false));
+    }
+    return CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).handle((ignored, error) -> {
+      String[] results = new String[txs.size()];
+      List<Integer> order = new ArrayList<>(txs.size());
+      for (int i = 0; i < txs.size(); i++) {
+        CompletableFuture<String> check = checks.get(i);
+        if (check.isCompletedExceptionally()) {
+          results[i] = reason(check);
+        } else if (!check.join().isEmpty()) {
+          results[i] = check.join();
+        } else {
+          order.add(i);
+        }
+      }
+      order.sort(Comparator.comparing((Integer i) -> txs.get(i).getSender()).thenComparingLong(i -> txs.get(i).getNonce()));
+      for (int i : order) {
+        results[i] = admission.apply(txs.get(i));
+      }
+      return List.of(results);
+    });
+  }
+
+  private CompletableFuture<String> enqueue(Transaction tx, PublicKey senderKey, boolean admit) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    if (tx == null || senderKey == null) {
+      result.complete("Отсутствует поле");
+      return result;
+    }
+    Hash hash = tx.id();
+    if (mempool.contains(hash) || !inFlight.add(hash)) {
+      result.complete("Транзакция уже в пуле");
+      return result;
+    }
+    if (!running || !queue.offer(new Job(tx, hash, senderKey, admit, result))) {
+      inFlight.remove(hash);
+      result.completeExceptionally(new RejectedExecutionException("Очередь проверки переполнена"));
+    }
+    return result;
+  }
+
+  private static String reason(CompletableFuture<String> check) {
+    try {
+      check.join();
+      return "";
+    } catch (RuntimeException e) {
+      Throwable cause = e.getCause() != null ? e.getCause() : e;
+      return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+  }
+
+  public int getQueueSize() {
+    return queue.size();
+  }
+
+  public void close() {
+    running = false;
+    for (Thread t : workers) t.interrupt();
+    List<Job> rest = new ArrayList<>();
+    queue.drainTo(rest);
+    for (Job job : rest) {
+      job.result.completeExceptionally(new RejectedExecutionException("Нода остановлена"));
+    }
+  }
+
+  private void work() {
+    Signature signature;
+    try {
+      signature = Signature.getInstance("SHA256withRSA");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    List<Job> batch = new ArrayList<>(BATCH_SIZE);
+    while (running) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      queue.drainTo(batch, BATCH_SIZE - 1);
+      List<Job> verified = verify(batch, signature);
+      verified.sort(Comparator.comparing((Job job) -> job.tx.getSender()).thenComparingLong(job -> job.tx.getNonce()));
+      for (Job job : verified) {
+        complete(job, () -> admission.apply(job.tx));
+      }
+      batch.clear();
+    }
+  }
+
+  private List<Job> verify(List<Job> batch, Signature signature) {
+    List<Job> verified = new ArrayList<>(batch.size());
+    Map<String, PublicKey> senders = new HashMap<>();
+    for (Job job : batch) {
+      String error;
+      try {
+        error = check(job, signature, senders);
+      } catch (Exception e) {
+        complete(job, e);
+        continue;
+      }
+      if (error.isEmpty() && job.admit) verified.add(job);
+      else complete(job, () -> error);
+    }
+    if (!senders.isEmpty()) {
+      synchronized (keys) {
+        keys.putAll(senders);
+      }
+    }
+    return verified;
+  }
+
+  private String check(Job job, Signature signature, Map<String, PublicKey> senders) {
+    Transaction tx = job.tx;
+    PublicKey known = senders.get(tx.getSender());
+    if (known == null) {
+      synchronized (keys) {
+        known = keys.get(tx.getSender());
+      }
+    }
+    if (known != job.key && !tx.getSender().equals(Wallet.getAddressFromPublicKey(job.key))) return "Некорректный адрес";
+    Timer.Sample sample = metrics.start();
+    boolean valid = tx.verify(job.key, signature);
+    metrics.verified(sample);
+    if (!valid) return "Подпись неверна";
+    if (known != job.key) senders.put(tx.getSender(), job.key);
+    return "";
+  }
+
+  private void complete(Job job, Supplier<String> result) {
+    try {
+      job.result.complete(result.get());
+    } catch (Exception e) {
+      job.result.completeExceptionally(e);
+    } finally {
+      inFlight.remove(job.hash);
+    }
+  }
+
+  private void complete(Job job, Exception error) {
+    job.result.completeExceptionally(error);
+    inFlight.remove(job.hash);
+  }
+
+  private static final class Job {
+    final Transaction tx;
+    final Hash hash;
+    final PublicKey key;
+    final boolean admit;
+    final CompletableFuture<String> result;
+
+    Job(Transaction tx, Hash hash, PublicKey key, boolean admit, CompletableFuture<String> result) {
+      this.tx = tx;
+      this.hash = hash;
+      this.key = key;
+      this.admit = admit;
+      this.result = result;
+    }
+  }
+}
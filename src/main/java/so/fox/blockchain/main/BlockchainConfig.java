@@ -1,9 +1,19 @@
 package so.fox.blockchain.main;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import so.fox.blockchain.core.Node;
+import so.fox.blockchain.core.NodeOptions;
+import so.fox.blockchain.core.StorageEngine;
 
 @Configuration
 public class BlockchainConfig {
@@ -11,8 +21,129 @@ public class BlockchainConfig {
   @Value("${blockchain.node.port:8080}")
   private int nodePort;
 
+  @Value("${blockchain.cache.blocks:1024}")
+  private int blockCacheSize;
+
+  @Value("${blockchain.cache.accounts:100000}")
+  private int accountCacheSize;
+
+  @Value("${blockchain.miner.threads:0}")
+  private int minerThreads;
+
+  @Value("${blockchain.db.sync:true}")
+  private boolean syncWrites;
+
+  @Value("${blockchain.mempool.capacity:50000}")
+  private int mempoolCapacity;
+
+  @Value("${blockchain.verify.threads:0}")
+  private int verifyThreads;
+
+  @Value("${blockchain.verify.queue:10000}")
+  private int verifyQueue;
+
+  @Value("${blockchain.verify.key-cache:100000}")
+  private int keyCacheSize;
+
+  @Value("${blockchain.block.max-interval-ms:10000}")
+  private long maxBlockInterval;
+
+  @Value("${blockchain.block.max-tx:1000}")
+  private int maxBlockTxCount;
+
+  @Value("${blockchain.block.max-bytes:1048576}")
+  private long maxBlockBytes;
+
+  @Value("${blockchain.p2p.port:0}")
+  private int p2pPort;
+
+  @Value("${blockchain.p2p.peers:}")
+  private String peers;
+
+  @Value("${blockchain.verify-chain:false}")
+  private boolean verifyChain;
+
+  @Value("${blockchain.snapshot.interval:0}")
+  private int snapshotInterval;
+
+  @Value("${blockchain.snapshot.dir:}")
+  private String snapshotDir;
+
+  @Value("${blockchain.snapshot.blocks:100}")
+  private int snapshotBlocks;
+
+  @Value("${blockchain.state.history:128}")
+  private int stateHistory;
+
+  @Value("${blockchain.difficulty.window:0}")
+  private int retargetWindow;
+
+  @Value("${blockchain.difficulty.interval-ms:10000}")
+  private long targetInterval;
+
+  @Value("${blockchain.archive.depth:0}")
+  private int archiveDepth;
+
+  @Value("${blockchain.archive.dir:}")
+  private String archiveDir;
+
+  @Value("${blockchain.archive.segment-blocks:4096}")
+  private int archiveSegment;
+
+  @Value("${blockchain.storage.engine:iq80}")
+  private String storageEngine;
+
   @Bean
-  public Node node() {
-    return new Node(nodePort);
+  public Node node(MeterRegistry meterRegistry, ApplicationArguments arguments) {
+    return new Node(nodePort, new NodeOptions()
+      .meterRegistry(meterRegistry)
+      .blockCacheSize(blockCacheSize)
+      .accountCacheSize(accountCacheSize)
+      .minerThreads(minerThreads)
+      .syncWrites(syncWrites)
+      .mempoolCapacity(mempoolCapacity)
+      .verifyThreads(verifyThreads)
+      .verifyQueue(verifyQueue)
+      .keyCacheSize(keyCacheSize)
+      .maxBlockInterval(maxBlockInterval)
+      .maxBlockTxCount(maxBlockTxCount)
+      .maxBlockBytes(maxBlockBytes)
+      .p2pPort(p2pPort)
+      .peers(parsePeers(peers))
+      .verifyChain(verifyChain || arguments.containsOption("verify-chain"))
+      .snapshotInterval(snapshotInterval)
+      .snapshotDir(snapshotDir.isEmpty() ? null : new File(snapshotDir))
+      .snapshotBlocks(snapshotBlocks)
+      .stateHistory(stateHistory)
+      .retargetWindow(retargetWindow)
+      .targetInterval(targetInterval)
+      .archiveDepth(archiveDepth)
+      .archiveDir(archiveDir.isEmpty() ? null : new File(archiveDir))
+      .archiveSegment(archiveSegment)
+      .storageEngine(StorageEngine.of(storageEngine))
+      .snapshotImport(option(arguments, "snapshot-import")));
+  }
+
+  @Bean
+  public CommandLineRunner snapshotExport(Node node, ApplicationArguments arguments, ConfigurableApplicationContext context) {
+    return args -> {
+      File target = option(arguments, "snapshot-export");
+      if (target == null) return;
+      node.exportSnapshot(target);
+      System.exit(SpringApplication.exit(context));
+    };
+  }
+
+  private static File option(ApplicationArguments arguments, String name) {
+    List<String> values = arguments.getOptionValues(name);
+    return values == null || values.isEmpty() || values.get(0).isEmpty() ? null : new File(values.get(0));
+  }
+
+  private static List<String> parsePeers(String peers) {
+    List<String> result = new ArrayList<>();
+    for (String peer : peers.split(",")) {
+      if (!peer.trim().isEmpty()) result.add(peer.trim());
+    }
+    return result;
   }
 }
\ No newline at end of file
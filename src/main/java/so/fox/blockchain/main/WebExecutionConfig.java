@@ -0,0 +1,59 @@
+package so.fox.blockchain.main;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebExecutionConfig implements WebMvcConfigurer, DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(WebExecutionConfig.class);
+
+  private final ExecutorService virtualThreads;
+
+  public WebExecutionConfig(@Value("${blockchain.web.executor:platform}") String executor) {
+    if ("virtual".equalsIgnoreCase(executor)) {
+      this.virtualThreads = virtualThreadExecutor();
+    } else if ("platform".equalsIgnoreCase(executor)) {
+      this.virtualThreads = null;
+    } else {
+      throw new IllegalArgumentException("Unknown blockchain.web.executor: " + executor + " (expected platform or virtual)");
+    }
+    log.info("web executor mode={}", virtualThreads != null ? "virtual" : "platform");
+  }
+
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> requestExecutor() {
+    return handler -> {
+      if (virtualThreads != null) handler.setExecutor(virtualThreads);
+    };
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    if (virtualThreads != null) configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreads));
+  }
+
+  @Override
+  public void destroy() {
+    if (virtualThreads != null) virtualThreads.shutdown();
+  }
+
+  private static ExecutorService virtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.warn("virtual threads unavailable java={} fallback=platform", System.getProperty("java.version"));
+      return null;
+    }
+  }
+}
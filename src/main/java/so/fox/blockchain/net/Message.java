@@ -0,0 +1,119 @@
+package so.fox.blockchain.net;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import so.fox.blockchain.core.Hash;
+
+final class Message {
+  static final int MAGIC = 0xF0C5B10C;
+  static final byte VERSION = 1;
+  static final int MAX_FRAME = 16 << 20;
+
+  static final byte HELLO = 1;
+  static final byte INV = 2;
+  static final byte GET_DATA = 3;
+  static final byte NOT_FOUND = 4;
+  static final byte BLOCK = 5;
+  static final byte TX = 6;
+  static final byte GET_HEADERS = 7;
+  static final byte HEADERS = 8;
+
+  static final byte ITEM_TX = 1;
+  static final byte ITEM_BLOCK = 2;
+
+  final byte type;
+  final ByteBuffer payload;
+
+  Message(byte type, ByteBuffer payload) {
+    this.type = type;
+    this.payload = payload;
+  }
+
+  static ByteBuffer hello(long nodeId, int listenPort, int height, Hash tip) {
+    ByteBuffer buf = start(HELLO, 4 + 1 + 8 + 4 + 4 + Hash.LENGTH);
+    buf.putInt(MAGIC).put(VERSION).putLong(nodeId).putInt(listenPort).putInt(height);
+    buf.put(tip == null ? new byte[Hash.LENGTH] : tip.toBytes());
+    return finish(buf);
+  }
+
+  static ByteBuffer items(byte type, byte itemType, List<Hash> hashes) {
+    ByteBuffer buf = start(type, 1 + 4 + hashes.size() * Hash.LENGTH);
+    buf.put(itemType).putInt(hashes.size());
+    for (Hash hash : hashes) {
+      buf.put(hash.toBytes());
+    }
+    return finish(buf);
+  }
+
+  static ByteBuffer getHeaders(List<Hash> locator, int max) {
+    ByteBuffer buf = start(GET_HEADERS, 4 + 4 + locator.size() * Hash.LENGTH);
+    buf.putInt(max).putInt(locator.size());
+    for (Hash hash : locator) {
+      buf.put(hash.toBytes());
+    }
+    return finish(buf);
+  }
+
+  static ByteBuffer headers(List<byte[]> records) {
+    int size = 4;
+    for (byte[] record : records) {
+      size += 4 + record.length;
+    }
+    ByteBuffer buf = start(HEADERS, size);
+    buf.putInt(records.size());
+    for (byte[] record : records) {
+      buf.putInt(record.length).put(record);
+    }
+    return finish(buf);
+  }
+
+  static ByteBuffer record(byte type, byte[] record) {
+    return finish(start(type, record.length).put(record));
+  }
+
+  static List<Hash> readHashes(ByteBuffer buf) throws IOException {
+    try {
+      int count = buf.getInt();
+      if (count < 0 || count * (long) Hash.LENGTH > buf.remaining()) throw new IOException("Invalid item count " + count);
+      List<Hash> hashes = new ArrayList<>(count);
+      byte[] raw = new byte[Hash.LENGTH];
+      for (int i = 0; i < count; i++) {
+        buf.get(raw);
+        hashes.add(Hash.of(raw));
+      }
+      return hashes;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated item list", e);
+    }
+  }
+
+  static List<byte[]> readRecords(ByteBuffer buf) throws IOException {
+    try {
+      int count = buf.getInt();
+      if (count < 0 || count > buf.remaining() / 4) throw new IOException("Invalid record count " + count);
+      List<byte[]> records = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        int len = buf.getInt();
+        if (len < 0 || len > buf.remaining()) throw new IOException("Invalid record length " + len);
+        byte[] record = new byte[len];
+        buf.get(record);
+        records.add(record);
+      }
+      return records;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated record list", e);
+    }
+  }
+
+  private static ByteBuffer start(byte type, int payloadSize) {
+    return ByteBuffer.allocate(4 + 1 + payloadSize).putInt(1 + payloadSize).put(type);
+  }
+
+  private static ByteBuffer finish(ByteBuffer buf) {
+    buf.flip();
+    return buf;
+  }
+}
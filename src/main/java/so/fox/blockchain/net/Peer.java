@@ -0,0 +1,99 @@
+package so.fox.blockchain.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import so.fox.blockchain.core.Hash;
+
+final class Peer {
+  private static final int READ_BUFFER = 64 * 1024;
+
+  final SocketChannel channel;
+  final InetSocketAddress seed;
+  final String name;
+  SelectionKey key;
+
+  private final long maxQueueBytes;
+  private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+  private long queuedBytes;
+  private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER);
+
+  volatile long nodeId;
+  volatile int height = -1;
+  volatile boolean ready;
+  volatile boolean closed;
+
+  final ArrayDeque<Hash> toFetch = new ArrayDeque<>();
+  final Set<Hash> queued = new HashSet<>();
+  final Set<Hash> inFlight = new HashSet<>();
+  boolean headersPending;
+
+  Peer(SocketChannel channel, InetSocketAddress seed, String name, long maxQueueBytes) {
+    this.channel = channel;
+    this.seed = seed;
+    this.name = name;
+    this.maxQueueBytes = maxQueueBytes;
+  }
+
+  boolean enqueue(ByteBuffer frame) {
+    synchronized (queue) {
+      if (closed || queuedBytes + frame.remaining() > maxQueueBytes) return false;
+      queue.add(frame);
+      queuedBytes += frame.remaining();
+      return true;
+    }
+  }
+
+  boolean flush() throws IOException {
+    synchronized (queue) {
+      while (!queue.isEmpty()) {
+        ByteBuffer head = queue.peek();
+        queuedBytes -= channel.write(head);
+        if (head.hasRemaining()) return false;
+        queue.poll();
+      }
+      return true;
+    }
+  }
+
+  long getQueuedBytes() {
+    synchronized (queue) {
+      return queuedBytes;
+    }
+  }
+
+  List<Message> read() throws IOException {
+    if (channel.read(readBuffer) < 0) return null;
+    readBuffer.flip();
+    List<Message> messages = new ArrayList<>();
+    int needed = 0;
+    while (readBuffer.remaining() >= 4) {
+      int len = readBuffer.getInt(readBuffer.position());
+      if (len < 1 || len > Message.MAX_FRAME) throw new IOException("Invalid frame length " + len);
+      if (readBuffer.remaining() < 4 + len) {
+        needed = 4 + len;
+        break;
+      }
+      readBuffer.getInt();
+      byte type = readBuffer.get();
+      byte[] payload = new byte[len - 1];
+      readBuffer.get(payload);
+      messages.add(new Message(type, ByteBuffer.wrap(payload)));
+    }
+    readBuffer.compact();
+    if (needed > readBuffer.capacity()) {
+      ByteBuffer bigger = ByteBuffer.allocate(needed);
+      readBuffer.flip();
+      bigger.put(readBuffer);
+      readBuffer = bigger;
+    }
+    return messages;
+  }
+}
@@ -0,0 +1,500 @@
+package so.fox.blockchain.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.BlockHeader;
+import so.fox.blockchain.core.Hash;
+import so.fox.blockchain.core.Node;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.util.SerializationUtils;
+
+public class PeerNetwork {
+  private static final Logger log = LoggerFactory.getLogger(PeerNetwork.class);
+  private static final int MAX_HEADERS = 2000;
+  private static final int FETCH_WINDOW = 256;
+  private static final int HANDLER_QUEUE = 10_000;
+  private static final long MAX_QUEUE_BYTES = 64L << 20;
+  private static final long RECONNECT_INTERVAL = 5_000;
+
+  private final Node node;
+  private final int port;
+  private final List<InetSocketAddress> seeds = new ArrayList<>();
+  private final long nodeId = new SecureRandom().nextLong();
+  private final Set<Peer> peers = ConcurrentHashMap.newKeySet();
+  private final Map<Long, Peer> byId = new ConcurrentHashMap<>();
+  private final Map<InetSocketAddress, Peer> outbound = new ConcurrentHashMap<>();
+  private final Map<InetSocketAddress, Long> seedIds = new ConcurrentHashMap<>();
+  private final Queue<Peer> writable = new ConcurrentLinkedQueue<>();
+  private final ThreadPoolExecutor handler;
+  private Selector selector;
+  private ServerSocketChannel server;
+  private Thread io;
+  private volatile boolean running;
+  private long lastReconnect;
+
+  public PeerNetwork(Node node, int port, List<String> peers) {
+    this.node = node;
+    this.port = port;
+    for (String peer : peers) {
+      int colon = peer.lastIndexOf(':');
+      if (colon < 0) throw new IllegalArgumentException("Peer must be host:port: " + peer);
+      seeds.add(new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+    }
+    this.handler = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(HANDLER_QUEUE), r -> {
+      Thread t = new Thread(r, "p2p-handler");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public void start() {
+    try {
+      selector = Selector.open();
+      server = ServerSocketChannel.open();
+      server.bind(new InetSocketAddress(port));
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      throw new RuntimeException("Error opening P2P port " + port + ": " + e.getMessage(), e);
+    }
+    running = true;
+    io = new Thread(this::loop, "p2p-io");
+    io.setDaemon(true);
+    io.start();
+    log.info("p2p listening port={} seeds={}", port, seeds);
+  }
+
+  public void close() {
+    running = false;
+    handler.shutdownNow();
+    if (selector != null) selector.wakeup();
+    try {
+      if (io != null) io.join(5_000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (Peer peer : peers) {
+      disconnect(peer, "shutdown");
+    }
+    try {
+      if (server != null) server.close();
+      if (selector != null) selector.close();
+    } catch (IOException e) {
+      log.warn("Error closing P2P listener", e);
+    }
+  }
+
+  public void announce(Block block) {
+    broadcast(Message.items(Message.INV, Message.ITEM_BLOCK, List.of(block.id())), null);
+  }
+
+  public void announce(Transaction tx) {
+    broadcast(Message.items(Message.INV, Message.ITEM_TX, List.of(tx.id())), null);
+  }
+
+  public int getPeerCount() {
+    return byId.size();
+  }
+
+  public List<Map<String, Object>> getPeers() {
+    List<Map<String, Object>> result = new ArrayList<>();
+    for (Peer peer : byId.values()) {
+      result.add(Map.of("address", peer.name, "outbound", peer.seed != null, "height", peer.height, "queuedBytes", peer.getQueuedBytes()));
+    }
+    return result;
+  }
+
+  private void broadcast(ByteBuffer frame, Peer except) {
+    for (Peer peer : byId.values()) {
+      if (peer != except) send(peer, frame.duplicate());
+    }
+  }
+
+  private boolean send(Peer peer, ByteBuffer frame) {
+    if (!peer.enqueue(frame)) {
+      if (!peer.closed) disconnect(peer, "send queue full");
+      return false;
+    }
+    writable.add(peer);
+    selector.wakeup();
+    return true;
+  }
+
+  private void loop() {
+    while (running) {
+      try {
+        reconnect();
+        selector.select(1_000);
+        Peer pending;
+        while ((pending = writable.poll()) != null) {
+          SelectionKey key = pending.key;
+          if (key != null && key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+          }
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (!key.isValid()) continue;
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          Peer peer = (Peer) key.attachment();
+          try {
+            if (key.isConnectable()) connected(peer);
+            if (key.isValid() && key.isReadable()) read(peer);
+            if (key.isValid() && key.isWritable() && peer.flush()) {
+              key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+          } catch (IOException e) {
+            disconnect(peer, e.getMessage());
+          }
+        }
+      } catch (ClosedSelectorException e) {
+        return;
+      } catch (IOException e) {
+        log.warn("p2p selector error", e);
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = server.accept();
+    if (channel == null) return;
+    channel.configureBlocking(false);
+    Peer peer = new Peer(channel, null, String.valueOf(channel.getRemoteAddress()), MAX_QUEUE_BYTES);
+    peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+    peers.add(peer);
+    hello(peer);
+  }
+
+  private void reconnect() {
+    long now = System.currentTimeMillis();
+    if (now - lastReconnect < RECONNECT_INTERVAL) return;
+    lastReconnect = now;
+    for (InetSocketAddress seed : seeds) {
+      if (outbound.containsKey(seed)) continue;
+      Long known = seedIds.get(seed);
+      if (known != null && byId.containsKey(known)) continue;
+      try {
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        Peer peer = new Peer(channel, seed, seed.getHostString() + ":" + seed.getPort(), MAX_QUEUE_BYTES);
+        outbound.put(seed, peer);
+        peers.add(peer);
+        if (channel.connect(seed)) {
+          peer.key = channel.register(selector, SelectionKey.OP_READ, peer);
+          hello(peer);
+        } else {
+          peer.key = channel.register(selector, SelectionKey.OP_CONNECT, peer);
+        }
+      } catch (IOException e) {
+        log.debug("p2p connect failed seed={} reason={}", seed, e.getMessage());
+      }
+    }
+  }
+
+  private void connected(Peer peer) throws IOException {
+    if (!peer.channel.finishConnect()) return;
+    peer.key.interestOps(SelectionKey.OP_READ);
+    hello(peer);
+  }
+
+  private void hello(Peer peer) {
+    Block tip = node.getLatestBlock();
+    send(peer, Message.hello(nodeId, port, node.getHeight(), tip == null ? null : tip.id()));
+  }
+
+  private void read(Peer peer) throws IOException {
+    List<Message> messages = peer.read();
+    if (messages == null) {
+      disconnect(peer, "closed by remote");
+      return;
+    }
+    for (Message message : messages) {
+      try {
+        handler.execute(() -> handle(peer, message));
+      } catch (RejectedExecutionException e) {
+        disconnect(peer, "handler queue full");
+        return;
+      }
+    }
+  }
+
+  private void disconnect(Peer peer, String reason) {
+    synchronized (peer) {
+      if (peer.closed) return;
+      peer.closed = true;
+    }
+    peers.remove(peer);
+    byId.remove(peer.nodeId, peer);
+    if (peer.seed != null) outbound.remove(peer.seed, peer);
+    if (peer.key != null) peer.key.cancel();
+    try {
+      peer.channel.close();
+    } catch (IOException e) {
+      log.debug("Error closing peer channel", e);
+    }
+    if (peer.ready) log.info("peer disconnected peer={} reason={}", peer.name, reason);
+  }
+
+  private void handle(Peer peer, Message message) {
+    if (peer.closed) return;
+    try {
+      if (message.type == Message.HELLO) {
+        onHello(peer, message.payload);
+        return;
+      }
+      if (!peer.ready) {
+        disconnect(peer, "message before hello");
+        return;
+      }
+      switch (message.type) {
+        case Message.INV:
+          onInventory(peer, message.payload);
+          break;
+        case Message.GET_DATA:
+          onGetData(peer, message.payload);
+          break;
+        case Message.NOT_FOUND:
+          onNotFound(peer, message.payload);
+          break;
+        case Message.BLOCK:
+          onBlock(peer, message.payload);
+          break;
+        case Message.TX:
+          onTransaction(message.payload);
+          break;
+        case Message.GET_HEADERS:
+          onGetHeaders(peer, message.payload);
+          break;
+        case Message.HEADERS:
+          onHeaders(peer, message.payload);
+          break;
+        default:
+          disconnect(peer, "unknown message type " + message.type);
+      }
+    } catch (Exception e) {
+      log.warn("p2p message rejected peer={} type={} reason={}", peer.name, message.type, e.getMessage());
+      disconnect(peer, "malformed message");
+    }
+  }
+
+  private void onHello(Peer peer, ByteBuffer buf) {
+    if (buf.getInt() != Message.MAGIC || buf.get() != Message.VERSION) {
+      disconnect(peer, "incompatible protocol");
+      return;
+    }
+    long remoteId = buf.getLong();
+    buf.getInt();
+    int height = buf.getInt();
+    if (remoteId == nodeId) {
+      if (peer.seed != null) seedIds.put(peer.seed, remoteId);
+      disconnect(peer, "self connection");
+      return;
+    }
+    if (peer.seed != null) seedIds.put(peer.seed, remoteId);
+    peer.nodeId = remoteId;
+    peer.height = height;
+    Peer existing = byId.putIfAbsent(remoteId, peer);
+    if (existing != null && existing != peer) {
+      if (preferred(peer, remoteId)) {
+        byId.put(remoteId, peer);
+        disconnect(existing, "duplicate connection");
+      } else {
+        disconnect(peer, "duplicate connection");
+        return;
+      }
+    }
+    peer.ready = true;
+    log.info("peer connected peer={} height={} outbound={}", peer.name, height, peer.seed != null);
+    if (height > node.getHeight()) requestHeaders(peer, locator());
+  }
+
+  private boolean preferred(Peer peer, long remoteId) {
+    long initiator = peer.seed != null ? nodeId : remoteId;
+    long acceptor = peer.seed != null ? remoteId : nodeId;
+    return initiator < acceptor;
+  }
+
+  private void onInventory(Peer peer, ByteBuffer buf) throws IOException {
+    byte itemType = buf.get();
+    List<Hash> hashes = Message.readHashes(buf);
+    if (itemType == Message.ITEM_BLOCK) {
+      for (Hash hash : hashes) {
+        if (!node.hasBlock(hash.toHex()) && !peer.queued.contains(hash)) {
+          requestHeaders(peer, locator());
+          return;
+        }
+      }
+    } else if (itemType == Message.ITEM_TX) {
+      List<Hash> missing = new ArrayList<>();
+      for (Hash hash : hashes) {
+        if (!node.getMempool().contains(hash)) missing.add(hash);
+      }
+      if (!missing.isEmpty()) send(peer, Message.items(Message.GET_DATA, Message.ITEM_TX, missing));
+    }
+  }
+
+  private void onGetData(Peer peer, ByteBuffer buf) throws IOException {
+    byte itemType = buf.get();
+    List<Hash> missing = new ArrayList<>();
+    for (Hash hash : Message.readHashes(buf)) {
+      byte[] record = null;
+      if (itemType == Message.ITEM_BLOCK) {
+        record = node.getBlockRecord(node.getBlockHeight(hash.toHex()));
+        if (record != null && !send(peer, Message.record(Message.BLOCK, record))) return;
+      } else if (itemType == Message.ITEM_TX) {
+        Transaction tx = node.getMempool().get(hash.toHex());
+        if (tx != null) {
+          record = SerializationUtils.encodeTransaction(tx);
+          if (!send(peer, Message.record(Message.TX, record))) return;
+        }
+      }
+      if (record == null) missing.add(hash);
+    }
+    if (!missing.isEmpty()) send(peer, Message.items(Message.NOT_FOUND, itemType, missing));
+  }
+
+  private void onNotFound(Peer peer, ByteBuffer buf) throws IOException {
+    byte itemType = buf.get();
+    List<Hash> hashes = Message.readHashes(buf);
+    if (itemType != Message.ITEM_BLOCK) return;
+    for (Hash hash : hashes) {
+      peer.inFlight.remove(hash);
+      peer.queued.remove(hash);
+    }
+    fetch(peer);
+  }
+
+  private void onBlock(Peer peer, ByteBuffer buf) throws IOException {
+    Block block = SerializationUtils.decodeBlock(buf);
+    Hash id = block.id();
+    boolean requested = peer.inFlight.remove(id);
+    peer.queued.remove(id);
+    String error = node.acceptBlock(block);
+    if (error.isEmpty()) {
+      peer.height = Math.max(peer.height, node.getHeight());
+      if (peer.toFetch.isEmpty() && peer.inFlight.isEmpty() && node.getLatestBlock().id().equals(id)) {
+        broadcast(Message.items(Message.INV, Message.ITEM_BLOCK, List.of(id)), peer);
+      }
+    } else if ("unknown parent".equals(error)) {
+      requestHeaders(peer, locator());
+    } else if (!"known block".equals(error)) {
+      log.warn("block rejected peer={} hash={} reason={}", peer.name, block.getHash(), error);
+      peer.toFetch.clear();
+      peer.queued.clear();
+      peer.inFlight.clear();
+      return;
+    }
+    if (requested) fetch(peer);
+  }
+
+  private void onTransaction(ByteBuffer buf) throws Exception {
+    Transaction tx = SerializationUtils.decodeTransaction(buf);
+    if (tx.getPublicKey() == null || tx.isCoinbase() || node.getMempool().contains(tx.id())) return;
+    PublicKey key = node.getPipeline().publicKey(tx.getSender(), tx.getPublicKey());
+    node.submitTransaction(tx, key);
+  }
+
+  private void onGetHeaders(Peer peer, ByteBuffer buf) throws IOException {
+    int max = Math.min(buf.getInt(), MAX_HEADERS);
+    int start = 0;
+    for (Hash hash : Message.readHashes(buf)) {
+      int height = node.getBlockHeight(hash.toHex());
+      if (height >= 0) {
+        start = height + 1;
+        break;
+      }
+    }
+    int end = Math.min(node.getHeight(), start + max - 1);
+    List<byte[]> records = new ArrayList<>(Math.max(0, end - start + 1));
+    for (int h = start; h <= end; h++) {
+      records.add(SerializationUtils.encodeHeader(node.getHeader(h)));
+    }
+    send(peer, Message.headers(records));
+  }
+
+  private void onHeaders(Peer peer, ByteBuffer buf) throws IOException {
+    peer.headersPending = false;
+    List<byte[]> records = Message.readRecords(buf);
+    String previous = null;
+    BlockHeader last = null;
+    for (byte[] record : records) {
+      BlockHeader header = SerializationUtils.decodeHeader(record);
+      if (previous != null && !previous.equals(header.getPreviousHash())) {
+        disconnect(peer, "headers do not link");
+        return;
+      }
+      if (!node.checkProofOfWork(header)) {
+        disconnect(peer, "invalid proof of work in headers");
+        return;
+      }
+      previous = header.getHash();
+      last = header;
+      Hash id = Hash.parse(header.getHash());
+      if (node.hasBlock(header.getHash()) || !peer.queued.add(id)) continue;
+      peer.toFetch.add(id);
+    }
+    if (records.size() >= MAX_HEADERS && last != null) {
+      requestHeaders(peer, List.of(Hash.parse(last.getHash())));
+    }
+    fetch(peer);
+  }
+
+  private void requestHeaders(Peer peer, List<Hash> locator) {
+    if (peer.headersPending) return;
+    peer.headersPending = true;
+    send(peer, Message.getHeaders(locator, MAX_HEADERS));
+  }
+
+  private void fetch(Peer peer) {
+    List<Hash> batch = new ArrayList<>();
+    while (peer.inFlight.size() < FETCH_WINDOW && !peer.toFetch.isEmpty()) {
+      Hash id = peer.toFetch.poll();
+      peer.inFlight.add(id);
+      batch.add(id);
+    }
+    if (!batch.isEmpty()) send(peer, Message.items(Message.GET_DATA, Message.ITEM_BLOCK, batch));
+  }
+
+  private List<Hash> locator() {
+    List<Hash> locator = new ArrayList<>();
+    int step = 1;
+    for (int h = node.getHeight(); h >= 0; h -= step) {
+      BlockHeader header = node.getHeader(h);
+      if (header != null) locator.add(Hash.parse(header.getHash()));
+      if (locator.size() >= 10) step *= 2;
+    }
+    BlockHeader genesis = node.getHeader(0);
+    if (genesis != null && (locator.isEmpty() || !locator.get(locator.size() - 1).toHex().equals(genesis.getHash()))) {
+      locator.add(Hash.parse(genesis.getHash()));
+    }
+    return locator;
+  }
+}
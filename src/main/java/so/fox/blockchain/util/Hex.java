@@ -0,0 +1,47 @@
+package so.fox.blockchain.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public final class Hex {
+  private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] VALUES = new byte[128];
+
+  static {
+    Arrays.fill(VALUES, (byte) -1);
+    for (int i = 0; i < DIGITS.length; i++) {
+      VALUES[DIGITS[i]] = (byte) i;
+    }
+  }
+
+  private Hex() {}
+
+  public static String encode(byte[] bytes) {
+    byte[] out = new byte[bytes.length * 2];
+    encode(bytes, out, 0);
+    return new String(out, StandardCharsets.ISO_8859_1);
+  }
+
+  public static void encode(byte[] bytes, byte[] out, int offset) {
+    for (int i = 0; i < bytes.length; i++) {
+      out[offset + 2 * i] = DIGITS[(bytes[i] >> 4) & 0xf];
+      out[offset + 2 * i + 1] = DIGITS[bytes[i] & 0xf];
+    }
+  }
+
+  public static byte[] decode(String hex) {
+    if (hex == null || (hex.length() & 1) != 0) return null;
+    byte[] out = new byte[hex.length() / 2];
+    for (int i = 0; i < out.length; i++) {
+      int hi = value(hex.charAt(2 * i));
+      int lo = value(hex.charAt(2 * i + 1));
+      if (hi < 0 || lo < 0) return null;
+      out[i] = (byte) ((hi << 4) | lo);
+    }
+    return out;
+  }
+
+  private static int value(char c) {
+    return c < VALUES.length ? VALUES[c] : -1;
+  }
+}
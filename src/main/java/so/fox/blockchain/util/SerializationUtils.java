@@ -5,9 +5,38 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiConsumer;
+import so.fox.blockchain.core.Block;
+import so.fox.blockchain.core.BlockHeader;
+import so.fox.blockchain.core.Transaction;
+import so.fox.blockchain.wallet.Account;
 
 public class SerializationUtils {
 
+  public static final byte FORMAT_VERSION = 3;
+
+  private static final byte TYPE_BLOCK = 1;
+  private static final byte TYPE_TRANSACTION = 2;
+  private static final byte TYPE_ACCOUNT = 3;
+  private static final byte TYPE_HEADER = 4;
+  private static final byte TYPE_UNDO = 5;
+
+  private static final byte RAW = 0;
+  private static final byte TEXT = 1;
+  private static final int MIN_TRANSACTION_BODY = 1 + 1 + 4 * 8 + 1 + 2 + 1;
+  private static final int MIN_UNDO_ENTRY = 1 + 2 * 8;
+
+  private static final int INITIAL_BUFFER = 4096;
+  private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER));
+
   public static byte[] serialize(Object obj) throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
          ObjectOutputStream oos = new ObjectOutputStream(baos)) {
@@ -22,4 +51,331 @@ public class SerializationUtils {
       return ois.readObject();
     }
   }
-}
\ No newline at end of file
+
+  public static boolean isLegacy(byte[] bytes) {
+    return bytes.length >= 2 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+  }
+
+  public static byte[] encodeBlock(Block block) {
+    return encode(block, SerializationUtils::encodeBlock);
+  }
+
+  public static byte[] encodeHeader(BlockHeader header) {
+    return encode(header, SerializationUtils::encodeHeader);
+  }
+
+  public static byte[] encodeTransaction(Transaction tx) {
+    return encode(tx, SerializationUtils::encodeTransaction);
+  }
+
+  public static byte[] encodeAccount(Account acc) {
+    return encode(acc, SerializationUtils::encodeAccount);
+  }
+
+  public static byte[] encodeUndo(List<Account> accounts) {
+    return encode(accounts, SerializationUtils::encodeUndo);
+  }
+
+  public static void encodeBlock(Block block, ByteBuffer buf) {
+    writeHeader(buf, TYPE_BLOCK);
+    writeHash(buf, block.getPreviousHash());
+    writeHash(buf, block.getHash());
+    writeHash(buf, block.getMerkleRoot());
+    buf.putLong(block.getTimestamp());
+    buf.putInt(block.getNonce());
+    buf.putInt(block.getBits());
+    List<Transaction> txs = block.getTransactions();
+    writeVarInt(buf, txs.size());
+    for (Transaction tx : txs) {
+      writeTransactionBody(buf, tx);
+    }
+  }
+
+  public static void encodeHeader(BlockHeader header, ByteBuffer buf) {
+    writeHeader(buf, TYPE_HEADER);
+    writeHash(buf, header.getPreviousHash());
+    writeHash(buf, header.getHash());
+    writeHash(buf, header.getMerkleRoot());
+    buf.putLong(header.getTimestamp());
+    buf.putInt(header.getNonce());
+    buf.putInt(header.getBits());
+  }
+
+  public static void encodeTransaction(Transaction tx, ByteBuffer buf) {
+    writeHeader(buf, TYPE_TRANSACTION);
+    writeTransactionBody(buf, tx);
+  }
+
+  public static void encodeAccount(Account acc, ByteBuffer buf) {
+    writeHeader(buf, TYPE_ACCOUNT);
+    writeString(buf, acc.getAddress());
+    buf.putLong(acc.getBalance());
+    buf.putLong(acc.getNonce());
+  }
+
+  public static void encodeUndo(List<Account> accounts, ByteBuffer buf) {
+    writeHeader(buf, TYPE_UNDO);
+    writeVarInt(buf, accounts.size());
+    for (Account acc : accounts) {
+      writeString(buf, acc.getAddress());
+      buf.putLong(acc.getBalance());
+      buf.putLong(acc.getNonce());
+    }
+  }
+
+  public static Block decodeBlock(byte[] bytes) throws IOException {
+    if (isLegacy(bytes)) return (Block) legacy(bytes);
+    return decodeBlock(ByteBuffer.wrap(bytes));
+  }
+
+  public static BlockHeader decodeHeader(byte[] bytes) throws IOException {
+    return decodeHeader(ByteBuffer.wrap(bytes));
+  }
+
+  public static Transaction decodeTransaction(byte[] bytes) throws IOException {
+    if (isLegacy(bytes)) return (Transaction) legacy(bytes);
+    return decodeTransaction(ByteBuffer.wrap(bytes));
+  }
+
+  public static Account decodeAccount(byte[] bytes) throws IOException {
+    if (isLegacy(bytes)) return (Account) legacy(bytes);
+    return decodeAccount(ByteBuffer.wrap(bytes));
+  }
+
+  public static Block decodeBlock(ByteBuffer buf) throws IOException {
+    try {
+      byte version = readHeader(buf, TYPE_BLOCK);
+      String previousHash = readHash(buf);
+      String hash = readHash(buf);
+      String merkleRoot = readHash(buf);
+      long timestamp = buf.getLong();
+      int nonce = buf.getInt();
+      int bits = version >= 3 ? buf.getInt() : 0;
+      int count = readCount(buf, MIN_TRANSACTION_BODY);
+      List<Transaction> txs = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        txs.add(readTransactionBody(buf, version));
+      }
+      return new Block(previousHash, hash, timestamp, nonce, txs, merkleRoot, bits);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated block record", e);
+    }
+  }
+
+  public static BlockHeader decodeHeader(ByteBuffer buf) throws IOException {
+    try {
+      byte version = readHeader(buf, TYPE_HEADER);
+      String previousHash = readHash(buf);
+      String hash = readHash(buf);
+      String merkleRoot = readHash(buf);
+      long timestamp = buf.getLong();
+      int nonce = buf.getInt();
+      int bits = version >= 3 ? buf.getInt() : 0;
+      return new BlockHeader(previousHash, hash, timestamp, nonce, merkleRoot, bits);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated block header", e);
+    }
+  }
+
+  public static Transaction decodeTransaction(ByteBuffer buf) throws IOException {
+    try {
+      byte version = readHeader(buf, TYPE_TRANSACTION);
+      return readTransactionBody(buf, version);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated transaction record", e);
+    }
+  }
+
+  public static Account decodeAccount(ByteBuffer buf) throws IOException {
+    try {
+      readHeader(buf, TYPE_ACCOUNT);
+      String address = readString(buf);
+      long balance = buf.getLong();
+      long nonce = buf.getLong();
+      return new Account(address, balance, nonce);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated account record", e);
+    }
+  }
+
+  public static List<Account> decodeUndo(byte[] bytes) throws IOException {
+    try {
+      ByteBuffer buf = ByteBuffer.wrap(bytes);
+      readHeader(buf, TYPE_UNDO);
+      int count = readCount(buf, MIN_UNDO_ENTRY);
+      List<Account> accounts = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        accounts.add(new Account(readString(buf), buf.getLong(), buf.getLong()));
+      }
+      return accounts;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated undo record", e);
+    }
+  }
+
+  private static Object legacy(byte[] bytes) throws IOException {
+    try {
+      return deserialize(bytes);
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unknown legacy record: " + e.getMessage(), e);
+    }
+  }
+
+  private static <T> byte[] encode(T value, BiConsumer<T, ByteBuffer> encoder) {
+    ByteBuffer buf = BUFFER.get();
+    while (true) {
+      try {
+        buf.clear();
+        encoder.accept(value, buf);
+        return Arrays.copyOf(buf.array(), buf.position());
+      } catch (BufferOverflowException e) {
+        buf = ByteBuffer.allocate(buf.capacity() * 2);
+        BUFFER.set(buf);
+      }
+    }
+  }
+
+  private static void writeHeader(ByteBuffer buf, byte type) {
+    buf.put(FORMAT_VERSION);
+    buf.put(type);
+  }
+
+  private static byte readHeader(ByteBuffer buf, byte type) throws IOException {
+    byte version = buf.get();
+    if (version < 1 || version > FORMAT_VERSION) {
+      throw new IOException("Unsupported record version: " + version);
+    }
+    byte actual = buf.get();
+    if (actual != type) {
+      throw new IOException("Unexpected record type: " + actual);
+    }
+    return version;
+  }
+
+  private static void writeTransactionBody(ByteBuffer buf, Transaction tx) {
+    writeString(buf, tx.getSender());
+    writeString(buf, tx.getRecipient());
+    buf.putLong(tx.getValue());
+    buf.putLong(tx.getFee());
+    buf.putLong(tx.getTimestamp());
+    buf.putLong(tx.getNonce());
+    writeString(buf, tx.getComment());
+    writeBase64(buf, tx.getSignature());
+    writeBase64(buf, tx.getPublicKey());
+    buf.put((byte) tx.getStatus());
+  }
+
+  private static Transaction readTransactionBody(ByteBuffer buf, byte version) throws IOException {
+    String sender = readString(buf);
+    String recipient = readString(buf);
+    long value = buf.getLong();
+    long fee = buf.getLong();
+    long timestamp = buf.getLong();
+    long nonce = buf.getLong();
+    String comment = readString(buf);
+    String signature = readBase64(buf);
+    String publicKey = version >= 2 ? readBase64(buf) : null;
+    int status = buf.get();
+    return new Transaction(sender, recipient, value, fee, timestamp, nonce, comment, signature, publicKey, status);
+  }
+
+  private static void writeHash(ByteBuffer buf, String hash) {
+    byte[] raw = hash.length() == 64 ? Hex.decode(hash) : null;
+    if (raw != null) {
+      buf.put(RAW);
+      buf.put(raw);
+    } else {
+      buf.put(TEXT);
+      writeString(buf, hash);
+    }
+  }
+
+  private static String readHash(ByteBuffer buf) throws IOException {
+    byte tag = buf.get();
+    if (tag == TEXT) return readString(buf);
+    if (tag != RAW) throw new IOException("Unknown hash encoding: " + tag);
+    byte[] raw = new byte[32];
+    buf.get(raw);
+    return Hex.encode(raw);
+  }
+
+  private static void writeBase64(ByteBuffer buf, String value) {
+    byte[] raw = null;
+    if (value != null) {
+      try {
+        raw = Base64.getDecoder().decode(value);
+        if (!Base64.getEncoder().encodeToString(raw).equals(value)) raw = null;
+      } catch (IllegalArgumentException e) {
+        raw = null;
+      }
+    }
+    if (raw != null) {
+      buf.put(RAW);
+      writeVarInt(buf, raw.length);
+      buf.put(raw);
+    } else {
+      buf.put(TEXT);
+      writeString(buf, value);
+    }
+  }
+
+  private static String readBase64(ByteBuffer buf) throws IOException {
+    byte tag = buf.get();
+    if (tag == TEXT) return readString(buf);
+    if (tag != RAW) throw new IOException("Unknown signature encoding: " + tag);
+    int len = readVarInt(buf);
+    if (len < 0 || len > buf.remaining()) throw new IOException("Signature length out of range: " + len);
+    byte[] raw = new byte[len];
+    buf.get(raw);
+    return Base64.getEncoder().encodeToString(raw);
+  }
+
+  private static void writeString(ByteBuffer buf, String s) {
+    if (s == null) {
+      writeVarInt(buf, 0);
+      return;
+    }
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVarInt(buf, bytes.length + 1);
+    buf.put(bytes);
+  }
+
+  private static String readString(ByteBuffer buf) throws IOException {
+    int len = readVarInt(buf);
+    if (len == 0) return null;
+    len--;
+    if (len < 0 || len > buf.remaining()) throw new IOException("String length out of range: " + len);
+    if (buf.hasArray()) {
+      String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+      buf.position(buf.position() + len);
+      return s;
+    }
+    byte[] bytes = new byte[len];
+    buf.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeVarInt(ByteBuffer buf, int value) {
+    while ((value & ~0x7F) != 0) {
+      buf.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buf.put((byte) value);
+  }
+
+  private static int readCount(ByteBuffer buf, int minItemSize) throws IOException {
+    int count = readVarInt(buf);
+    if (count < 0 || count > buf.remaining() / minItemSize) throw new IOException("Item count out of range: " + count);
+    return count;
+  }
+
+  private static int readVarInt(ByteBuffer buf) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = buf.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return value;
+    }
+    throw new IOException("Malformed varint");
+  }
+}
@@ -7,6 +7,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
+import so.fox.blockchain.util.Hex;
 
 public class Wallet {
 
@@ -37,9 +38,7 @@ public class Wallet {
     try {
       MessageDigest digest = MessageDigest.getInstance("SHA-256");
       byte[] hash = digest.digest(publicKey.getEncoded());
-      StringBuilder sb = new StringBuilder();
-      for (byte b : hash) sb.append(String.format("%02x", b));
-      char[] arr = sb.toString().toCharArray();
+      char[] arr = Hex.encode(hash).toCharArray();
       int posF = (hash[0] & 0xFF) % 5;
       int posO = (hash[1] & 0xFF) % 5;
       while (posO == posF) posO = (posO + 1) % 5;
@@ -0,0 +1,60 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BlockTimestampTest {
+  @TempDir
+  File dir;
+
+  private Node node;
+
+  @BeforeEach
+  void open() {
+    node = TestNodes.node(dir);
+  }
+
+  @AfterEach
+  void close() {
+    if (node != null) node.close();
+  }
+
+  @Test
+  void blockMustBeNewerThanMedianTimePast() {
+    long start = System.currentTimeMillis();
+    Block tip = node.getLatestBlock();
+    for (int i = 1; i <= 3; i++) {
+      tip = TestNodes.mine(tip, start + i * 1000L, "miner", node.miningReward(), i);
+      assertEquals("", node.acceptBlock(tip));
+    }
+
+    Block stale = TestNodes.mine(tip, start + 2000L, "miner", node.miningReward(), 4);
+    assertEquals("timestamp not after median time past", node.acceptBlock(stale));
+    assertEquals(3, node.getHeight());
+
+    Block late = TestNodes.mine(tip, start + 2001L, "miner", node.miningReward(), 4);
+    assertEquals("", node.acceptBlock(late));
+    assertEquals(4, node.getHeight());
+  }
+
+  @Test
+  void minedBlockStaysAheadOfMedianTimePast() {
+    long ahead = System.currentTimeMillis() + 60 * 60 * 1000L;
+    Block tip = node.getLatestBlock();
+    for (int i = 1; i <= 5; i++) {
+      tip = TestNodes.mine(tip, ahead + i, "miner", node.miningReward(), i);
+      assertEquals("", node.acceptBlock(tip));
+    }
+
+    Block mined = node.mineBlock();
+    assertTrue(mined.getTimestamp() > ahead + 3);
+    assertEquals(6, node.getHeight());
+    assertEquals(mined.getHash(), node.getLatestBlock().getHash());
+  }
+}
@@ -0,0 +1,71 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Base64;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import so.fox.blockchain.wallet.Wallet;
+
+class BlockValidationTest {
+  @TempDir
+  File dir;
+
+  private Node node;
+  private Wallet wallet;
+
+  @BeforeEach
+  void open() {
+    node = TestNodes.node(dir);
+    wallet = node.getNodeWallet();
+    node.mineBlock();
+  }
+
+  @AfterEach
+  void close() {
+    if (node != null) node.close();
+  }
+
+  @Test
+  void cachedSenderKeyDoesNotCoverForeignKey() throws Exception {
+    assertEquals("", node.submitTransaction(TestNodes.transfer(wallet, "bob", 5, 1, 0), wallet.getPublicKey()).get());
+    String foreign = Base64.getEncoder().encodeToString(new Wallet().getPublicKey().getEncoded());
+    Transaction tx = TestNodes.transfer(wallet, "bob", 5, 1, 0).withPublicKey(foreign);
+    Block block = TestNodes.mine(node.getLatestBlock(), "miner", node.miningReward(), 2, tx);
+
+    assertTrue(node.acceptBlock(block).startsWith("sender key mismatch"));
+    assertEquals(1, node.getHeight());
+  }
+
+  @Test
+  void transferAmountOverflowIsRejected() {
+    Transaction tx = TestNodes.transfer(wallet, "mallory", Long.MAX_VALUE, 1, 0).withPublicKey(encodedKey());
+    Block block = TestNodes.mine(node.getLatestBlock(), "miner", node.miningReward(), 2, tx);
+
+    assertTrue(node.acceptBlock(block).startsWith("invalid transfer"));
+    assertEquals(1, node.getHeight());
+    assertNull(node.getAccount("mallory"));
+    assertEquals(node.miningReward(), node.getAccount(wallet.getAddress()).getBalance());
+  }
+
+  @Test
+  void admissionRejectsNegativeFeeAndOverflowingCost() {
+    assertEquals("Комиссия не может быть отрицательной",
+      node.addTransaction(TestNodes.transfer(wallet, "bob", 5, -1, 0), wallet.getPublicKey()));
+    assertEquals("Недостаточно средств с учётом комиссии",
+      node.addTransaction(TestNodes.transfer(wallet, "bob", Long.MAX_VALUE, 1, 0), wallet.getPublicKey()));
+    assertEquals("", node.addTransaction(TestNodes.transfer(wallet, "bob", node.miningReward() - 1, 1, 0), wallet.getPublicKey()));
+    assertEquals("Недостаточно средств с учётом комиссии",
+      node.addTransaction(TestNodes.transfer(wallet, "bob", Long.MAX_VALUE, Long.MAX_VALUE, 1), wallet.getPublicKey()));
+    assertEquals(1, node.getMempool().size());
+  }
+
+  private String encodedKey() {
+    return Base64.getEncoder().encodeToString(wallet.getPublicKey().getEncoded());
+  }
+}
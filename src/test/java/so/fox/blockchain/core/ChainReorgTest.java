@@ -0,0 +1,104 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import so.fox.blockchain.wallet.Wallet;
+
+class ChainReorgTest {
+  @TempDir
+  File dir;
+
+  private Node a;
+  private Node b;
+
+  @BeforeEach
+  void open() {
+    a = TestNodes.node(new File(dir, "a"));
+    b = TestNodes.node(new File(dir, "b"));
+  }
+
+  @AfterEach
+  void close() {
+    if (a != null) a.close();
+    if (b != null) b.close();
+  }
+
+  @Test
+  void heavierBranchDisconnectsReconnectsAndReadmits() {
+    Wallet wallet = a.getNodeWallet();
+    Block common = a.mineBlock();
+    assertEquals("", b.acceptBlock(common));
+    assertEquals("", a.addTransaction(TestNodes.transfer(wallet, "xavier", 5, 1, 0), wallet.getPublicKey()));
+    a.mineBlock();
+    a.mineBlock();
+    assertEquals(5, a.getAccount("xavier").getBalance());
+
+    List<Block> branch = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      branch.add(b.mineBlock());
+    }
+    assertEquals("", a.acceptBlock(branch.get(0)));
+    assertEquals("", a.acceptBlock(branch.get(1)));
+    assertEquals(3, a.getHeight());
+    assertEquals("known block", a.acceptBlock(branch.get(1)));
+
+    assertEquals("", a.acceptBlock(branch.get(2)));
+    assertEquals(4, a.getHeight());
+    assertEquals(branch.get(2).getHash(), a.getLatestBlock().getHash());
+    assertEquals(0, a.getAccount("xavier").getBalance());
+    assertEquals(a.miningReward(), a.getAccount(wallet.getAddress()).getBalance());
+    assertEquals(3 * a.miningReward(), a.getAccount(b.getNodeAddress()).getBalance());
+    assertEquals(1, a.getMempool().size());
+    assertNotNull(a.getTransactionProof(branch.get(2).getTransactions().get(0).getHash()));
+
+    assertEquals("", a.acceptBlock(branch.get(3)));
+    Block mined = a.mineBlock();
+    assertEquals(2, mined.getTransactions().size());
+    assertEquals(5, a.getAccount("xavier").getBalance());
+    assertEquals("", b.acceptBlock(mined));
+    assertEquals(5, b.getAccount("xavier").getBalance());
+
+    a.close();
+    a = TestNodes.node(new File(dir, "a"));
+    assertEquals(6, a.getHeight());
+    assertEquals(mined.getHash(), a.getLatestBlock().getHash());
+    assertEquals(branch.get(2).getHash(), a.getBlock(4).getHash());
+  }
+
+  @Test
+  void invalidBranchIsMarkedAndDescendantsRejected() {
+    Block common = a.mineBlock();
+    a.mineBlock();
+    a.mineBlock();
+    String tip = a.getLatestBlock().getHash();
+    long reward = a.miningReward();
+
+    Block bad = TestNodes.mine(common, "mallory", reward * 100, 2);
+    Block next = TestNodes.mine(bad, "mallory", reward, 3);
+    Block heavier = TestNodes.mine(next, "mallory", reward, 4);
+    assertEquals("", a.acceptBlock(bad));
+    assertEquals("", a.acceptBlock(next));
+    assertTrue(a.acceptBlock(heavier).startsWith("invalid branch block " + bad.getHash()));
+    assertEquals(tip, a.getLatestBlock().getHash());
+    assertNull(a.getAccount("mallory"));
+
+    Block descendant = TestNodes.mine(heavier, "mallory", reward, 5);
+    assertEquals("invalid parent " + heavier.getHash(), a.acceptBlock(descendant));
+    Block sibling = TestNodes.mine(next, "mallory", reward, 4);
+    assertEquals("invalid parent " + next.getHash(), a.acceptBlock(sibling));
+    assertEquals("known invalid block", a.acceptBlock(bad));
+    assertEquals("known invalid block", a.acceptBlock(descendant));
+    assertEquals(tip, a.getLatestBlock().getHash());
+    assertEquals("", a.acceptBlock(TestNodes.mine(a.getLatestBlock(), "carol", reward, 4)));
+  }
+}
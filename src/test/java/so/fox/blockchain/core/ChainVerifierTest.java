@@ -0,0 +1,90 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.bytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import so.fox.blockchain.util.SerializationUtils;
+import so.fox.blockchain.wallet.Account;
+import so.fox.blockchain.wallet.Wallet;
+
+class ChainVerifierTest {
+  @TempDir
+  File dir;
+
+  @Test
+  void interruptedVerificationBlocksNormalStart() throws IOException {
+    Node node = TestNodes.node(dir);
+    node.mineBlock();
+    node.mineBlock();
+    long balance = node.getAccount(node.getNodeAddress()).getBalance();
+    node.close();
+
+    try (DB db = StorageEngine.IQ80.open(dir, new Options())) {
+      db.put(ChainVerifier.VERIFY_KEY, new byte[] {1});
+    }
+    RuntimeException error = assertThrows(RuntimeException.class, () -> TestNodes.node(dir));
+    assertTrue(error.getMessage().contains("--verify-chain"));
+
+    node = new Node(0, TestNodes.options(dir).verifyChain(true));
+    assertEquals(balance, node.getAccount(node.getNodeAddress()).getBalance());
+    node.close();
+
+    node = TestNodes.node(dir);
+    assertEquals(2, node.getHeight());
+    assertEquals(balance, node.getAccount(node.getNodeAddress()).getBalance());
+    node.close();
+  }
+
+  @Test
+  void legacyChainWithoutSenderKeysIsNotTruncated() throws Exception {
+    File seed = new File(dir, "seed");
+    Node node = TestNodes.node(seed);
+    Wallet wallet = node.getNodeWallet();
+    long reward = node.miningReward();
+    node.close();
+    File legacy = new File(dir, "legacy");
+    Files.createDirectories(legacy.toPath());
+    Files.copy(new File(seed, "nodewallet.dat").toPath(), new File(legacy, "nodewallet.dat").toPath());
+
+    List<Block> blocks = new ArrayList<>();
+    blocks.add(legacyBlock("0", new ArrayList<>()));
+    blocks.add(legacyBlock(blocks.get(0).getHash(), new ArrayList<>()));
+    List<Transaction> txs = new ArrayList<>();
+    txs.add(TestNodes.transfer(wallet, "bob", 5, 1, 0));
+    blocks.add(legacyBlock(blocks.get(1).getHash(), txs));
+    try (DB db = StorageEngine.IQ80.open(legacy, new Options())) {
+      for (Block block : blocks) {
+        db.put(bytes("block_" + block.getHash()), SerializationUtils.serialize(block));
+      }
+      db.put(bytes("account_" + wallet.getAddress()), SerializationUtils.serialize(new Account(wallet.getAddress(), 3 * reward - 5, 1)));
+      db.put(bytes("account_bob"), SerializationUtils.serialize(new Account("bob", 5, 0)));
+    }
+
+    node = new Node(0, TestNodes.options(legacy).verifyChain(true));
+    assertEquals(2, node.getHeight());
+    assertEquals(blocks.get(2).getHash(), node.getLatestBlock().getHash());
+    assertEquals(5, node.getAccount("bob").getBalance());
+    assertEquals(2 * reward - 5, node.getAccount(wallet.getAddress()).getBalance());
+    assertEquals(1, node.getAccount(wallet.getAddress()).getNonce());
+    node.close();
+  }
+
+  private static Block legacyBlock(String previousHash, List<Transaction> txs) throws InterruptedException {
+    Thread.sleep(2);
+    Block block = new Block(previousHash, txs);
+    block.mineBlock(4);
+    return block;
+  }
+}
@@ -0,0 +1,157 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.ReadOptions;
+import org.iq80.leveldb.Snapshot;
+import org.iq80.leveldb.WriteBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MemoryDBTest {
+  private static final long SLAB = 1 << 20;
+
+  private final MemoryDB db = new MemoryDB();
+
+  @AfterEach
+  void close() {
+    db.close();
+  }
+
+  @Test
+  void snapshotKeepsValuesOverwrittenAndDeletedAfterIt() throws Exception {
+    db.put(bytes("a"), bytes("1"));
+    db.put(bytes("b"), bytes("1"));
+    Snapshot snapshot = db.getSnapshot();
+    db.put(bytes("a"), bytes("2"));
+    db.delete(bytes("b"));
+    db.put(bytes("c"), bytes("2"));
+
+    ReadOptions at = new ReadOptions().snapshot(snapshot);
+    assertArrayEquals(bytes("1"), db.get(bytes("a"), at));
+    assertArrayEquals(bytes("1"), db.get(bytes("b"), at));
+    assertNull(db.get(bytes("c"), at));
+    assertArrayEquals(bytes("2"), db.get(bytes("a")));
+    assertNull(db.get(bytes("b")));
+
+    snapshot.close();
+    assertArrayEquals(bytes("2"), db.get(bytes("a")));
+    assertNull(db.get(bytes("b")));
+  }
+
+  @Test
+  void iteratorSeesStateAtCreation() throws Exception {
+    WriteBatch batch = db.createWriteBatch();
+    for (String key : new String[] {"k3", "k1", "k4", "k2"}) {
+      batch.put(bytes(key), bytes(key));
+    }
+    db.write(batch);
+
+    try (DBIterator it = db.iterator()) {
+      db.delete(bytes("k2"));
+      db.put(bytes("k5"), bytes("k5"));
+      it.seek(bytes("k2"));
+      assertEquals(List.of("k2", "k3", "k4"), keys(it));
+      assertFalse(it.hasNext());
+      assertEquals("k4", string(it.prev().getKey()));
+      it.seekToFirst();
+      assertEquals("k1", string(it.peekNext().getKey()));
+      it.seekToLast();
+      assertEquals("k4", string(it.next().getKey()));
+    }
+
+    try (DBIterator it = db.iterator()) {
+      it.seekToFirst();
+      assertEquals(List.of("k1", "k3", "k4", "k5"), keys(it));
+    }
+  }
+
+  @Test
+  void tombstonesAreSweptOnceNoSnapshotNeedsThem() throws Exception {
+    byte[] value = new byte[1000];
+    for (int i = 0; i < 3000; i++) {
+      db.put(bytes("key" + i), value);
+    }
+    long filled = memory();
+    assertTrue(filled >= 3 * SLAB && filled <= 4 * SLAB, "memory " + filled);
+
+    Snapshot snapshot = db.getSnapshot();
+    for (int i = 0; i < 3000; i++) {
+      db.delete(bytes("key" + i));
+    }
+    assertEquals(filled, memory());
+    assertEquals(1000, db.get(bytes("key0"), new ReadOptions().snapshot(snapshot)).length);
+
+    snapshot.close();
+    assertEquals(SLAB, memory());
+    try (DBIterator it = db.iterator()) {
+      it.seekToFirst();
+      assertFalse(it.hasNext());
+    }
+
+    db.put(bytes("large"), new byte[(int) SLAB]);
+    assertEquals(2 * SLAB, memory());
+    db.delete(bytes("large"));
+    assertEquals(SLAB, memory());
+  }
+
+  @Test
+  void readersNeverMissOverwrittenKey() throws Exception {
+    db.put(bytes("hot"), bytes("0"));
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicReference<String> failure = new AtomicReference<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader = new Thread(() -> {
+        while (running.get()) {
+          byte[] value = db.get(bytes("hot"));
+          if (value == null) failure.compareAndSet(null, "missing value");
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    for (int i = 1; i <= 20000; i++) {
+      db.put(bytes("hot"), bytes(Integer.toString(i)));
+    }
+    running.set(false);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertNull(failure.get());
+    assertArrayEquals(bytes("20000"), db.get(bytes("hot")));
+  }
+
+  private long memory() {
+    return Long.parseLong(db.getProperty("leveldb.approximate-memory-usage"));
+  }
+
+  private static List<String> keys(DBIterator it) {
+    List<String> keys = new ArrayList<>();
+    while (it.hasNext()) {
+      Map.Entry<byte[], byte[]> entry = it.next();
+      assertArrayEquals(entry.getKey(), entry.getValue());
+      keys.add(string(entry.getKey()));
+    }
+    return keys;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,91 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PeerSyncTest {
+  private static final long TIMEOUT_MILLIS = 60_000;
+
+  @TempDir
+  File dir;
+
+  private final List<Node> nodes = new ArrayList<>();
+
+  @AfterEach
+  void close() {
+    for (Node node : nodes) {
+      node.close();
+    }
+  }
+
+  @Test
+  void nodesConvergeOnHeaviestBranch() throws Exception {
+    int portA = freePort();
+    int portB = freePort();
+    int portC = freePort();
+
+    Node a = start("a", portA);
+    for (int i = 0; i < 3; i++) {
+      a.mineBlock();
+    }
+    Block orphaned = a.getLatestBlock();
+
+    Node c = start("c", portC, "127.0.0.1:" + portB);
+    for (int i = 0; i < 6; i++) {
+      c.mineBlock();
+    }
+    Block heaviest = c.getLatestBlock();
+
+    Node b = start("b", portB, "127.0.0.1:" + portA);
+    await(() -> tip(a).equals(heaviest.getHash()) && tip(b).equals(heaviest.getHash()));
+    assertEquals(6, a.getHeight());
+    assertEquals(6, b.getHeight());
+    assertEquals(-1, a.getBlockHeight(orphaned.getHash()));
+    assertEquals(0, a.getAccount(a.getNodeAddress()).getBalance());
+
+    Block next = a.mineBlock();
+    await(() -> tip(b).equals(next.getHash()) && tip(c).equals(next.getHash()));
+    for (Node node : nodes) {
+      assertEquals(7, node.getHeight());
+    }
+    assertTrue(c.getNetwork().getPeerCount() > 0);
+  }
+
+  private Node start(String name, int port, String... peers) {
+    Node node = new Node(0, TestNodes.options(new File(dir, name))
+      .storageEngine(StorageEngine.MEMORY)
+      .p2pPort(port)
+      .peers(Arrays.asList(peers)));
+    nodes.add(node);
+    return node;
+  }
+
+  private static String tip(Node node) {
+    return node.getLatestBlock().getHash();
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) throw new AssertionError("Nodes did not converge");
+      Thread.sleep(20);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package so.fox.blockchain.core;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StateSnapshotTest {
+  @TempDir
+  File dir;
+
+  @Test
+  void oversizedEntryIsRejectedBeforeAllocation() throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (DeflaterOutputStream deflate = new DeflaterOutputStream(body)) {
+      deflate.write(ByteBuffer.allocate(5).put((byte) 1).putInt(Integer.MAX_VALUE - 8).array());
+    }
+    ByteBuffer file = ByteBuffer.allocate(45 + body.size() + 12)
+      .putInt(0x464F5853).put((byte) 1).putInt(0).putInt(0).put(new byte[32])
+      .put(body.toByteArray())
+      .putLong(1).putInt(0);
+    File snapshot = new File(dir, "hostile.fox");
+    Files.write(snapshot.toPath(), file.array());
+
+    RuntimeException error = assertThrows(RuntimeException.class,
+      () -> new Node(0, TestNodes.options(new File(dir, "node")).snapshotImport(snapshot)));
+    assertTrue(error.getMessage().contains("Corrupt snapshot entry length"), error.getMessage());
+  }
+}
@@ -0,0 +1,49 @@
+package so.fox.blockchain.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import so.fox.blockchain.wallet.Wallet;
+
+final class TestNodes {
+  private TestNodes() {
+  }
+
+  static NodeOptions options(File dir) {
+    return new NodeOptions()
+      .dataDir(dir)
+      .syncWrites(false)
+      .maxBlockInterval(Long.MAX_VALUE)
+      .maxBlockTxCount(Integer.MAX_VALUE);
+  }
+
+  static Node node(File dir) {
+    return new Node(0, options(dir));
+  }
+
+  static Transaction transfer(Wallet from, String to, long value, long fee, long nonce) {
+    String sender = from.getAddress();
+    String data = sender + "|" + to + "|" + value + "|" + fee + "|" + nonce + "|" + "";
+    return new Transaction(sender, to, value, fee, nonce, "", Base64.getEncoder().encodeToString(from.sign(data)));
+  }
+
+  static Block mine(Block parent, String miner, long reward, int height, Transaction... txs) {
+    return mine(parent, Math.max(System.currentTimeMillis(), parent.getTimestamp() + 1), miner, reward, height, txs);
+  }
+
+  static Block mine(Block parent, long timestamp, String miner, long reward, int height, Transaction... txs) {
+    List<Transaction> all = new ArrayList<>();
+    all.add(Transaction.coinbase(miner, reward, height));
+    all.addAll(Arrays.asList(txs));
+    Block block = new Block(parent.getHash(), all, MerkleTree.of(all), parent.getBits(), timestamp);
+    Miner pow = new Miner(1);
+    try {
+      if (!pow.mine(block)) throw new IllegalStateException("Mining cancelled");
+    } finally {
+      pow.close();
+    }
+    return block;
+  }
+}